@@ -0,0 +1,209 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+
+/**
+ * AllPairsCheckpoint lets a long run of ApplyDijkstraAllPairs be stopped and
+ * resumed (<tt>java ApplyDijkstraAllPairs -checkpoint dir [-resume] [-batch
+ * n]</tt>). The directory holds:
+ * <ul>
+ * <li><tt>input.txt</tt>, the output of ApplyBellmanFord the run was started
+ * with, the potentials and G**, so a resumed run needs neither
+ * CreateAuxiliaryGraph nor ApplyBellmanFord;
+ * <li><tt>checkpoint.txt</tt>, <em>V</em> and the number of rows per chunk;
+ * <li><tt>rows-s.txt</tt>, the rows of the chunk of sources starting at
+ * <tt>s</tt>, written to a temporary file and renamed once complete, so a
+ * chunk file that exists is never partial.
+ * </ul>
+ * A resumed run skips the chunks already in the directory. When every chunk
+ * is there they are copied to standard output in order, so the output is
+ * the same as the one of a run that was never stopped. A run stopped by an
+ * interrupt or a kill finishes the row it is computing, drops the rest of
+ * its chunk and returns, so nothing is left half written.
+ *
+ * @author SephyZhou
+ *
+ */
+public class AllPairsCheckpoint {
+	private final File dir;
+	private final int V;
+	private final int chunk; // rows per chunk file
+	private volatile boolean cancelled;
+
+	/**
+	 * Copies the output of ApplyBellmanFord from standard input to
+	 * <tt>input.txt</tt> of a new checkpoint directory, or, to resume, finds
+	 * it there; either way standard input is then read from that file, so it
+	 * must not have been used yet.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if a new run would overwrite a checkpoint, or there is none
+	 *             to resume
+	 */
+	public static void openInput(File dir, boolean resume) throws IOException {
+		File input = new File(dir, "input.txt");
+		boolean exists = new File(dir, "checkpoint.txt").exists();
+		if (resume && (!exists || !input.exists()))
+			throw new IllegalArgumentException("no checkpoint to resume in "
+					+ dir);
+		if (!resume) {
+			if (exists)
+				throw new IllegalArgumentException("checkpoint " + dir
+						+ " exists (use -resume or another directory)");
+			if (!dir.isDirectory() && !dir.mkdirs())
+				throw new IOException("cannot create " + dir);
+			File tmp = new File(dir, "input.tmp");
+			Files.copy(System.in, tmp.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+			Files.move(tmp.toPath(), input.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		}
+		// StdIn reads System.in from the moment it is first used
+		System.setIn(new FileInputStream(input));
+	}
+
+	/**
+	 * Opens the checkpoint of a run over <tt>V</tt> sources; a new one is
+	 * cut into chunks of <tt>chunk</tt> rows, a resumed one keeps its own.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the checkpoint was made for another number of vertices
+	 */
+	public AllPairsCheckpoint(File dir, int V, int chunk, boolean resume)
+			throws IOException {
+		this.dir = dir;
+		this.V = V;
+		File file = new File(dir, "checkpoint.txt");
+		if (resume) {
+			BufferedReader in = new BufferedReader(new FileReader(file));
+			String[] tok = in.readLine().trim().split("\\s+");
+			in.close();
+			if (Integer.parseInt(tok[0]) != V)
+				throw new IllegalArgumentException("checkpoint " + dir
+						+ " is for " + tok[0] + " vertices, not " + V);
+			chunk = Integer.parseInt(tok[1]);
+		} else {
+			if (chunk < 1)
+				throw new IllegalArgumentException("batch must be positive");
+			PrintWriter out = new PrintWriter(file);
+			out.println(V + " " + chunk);
+			out.close();
+		}
+		this.chunk = chunk;
+	}
+
+	// has the chunk starting at from been written?
+	public boolean done(int from) {
+		return rows(from).exists();
+	}
+
+	/**
+	 * Computes every chunk not yet in the directory, reporting to
+	 * <tt>progress</tt> if it is not null. Returns false if the run was
+	 * stopped before it was complete.
+	 */
+	public boolean run(CompactDigraph G, Progress progress) throws IOException {
+		final Thread main = Thread.currentThread();
+		Thread hook = new Thread() {
+			public void run() {
+				cancelled = true;
+				try {
+					main.join(10000);
+				} catch (InterruptedException e) {
+				}
+			}
+		};
+		Runtime.getRuntime().addShutdownHook(hook);
+
+		int[] parent = new int[V];
+		double[] dist = new double[V];
+		double[] weight = new double[V];
+		int[] path = new int[V];
+		StringBuilder row = new StringBuilder();
+		char[] chars = new char[1 << 12];
+		try {
+			for (int from = 0; from < V && !cancelled; from += chunk) {
+				int end = Math.min(V, from + chunk);
+				if (done(from)) {
+					if (progress != null)
+						progress.skipped(end - from);
+					continue;
+				}
+				// every row goes straight to the temporary file, which is
+				// made durable and renamed into place once the chunk is
+				// complete, or deleted if it is not
+				File tmp = new File(dir, "rows-" + from + ".tmp");
+				FileOutputStream file = new FileOutputStream(tmp);
+				Writer out = new BufferedWriter(new OutputStreamWriter(file,
+						"UTF-8"), 1 << 16);
+				boolean complete = false;
+				try {
+					for (int s = from; s < end; s++) {
+						if (cancelled)
+							return false;
+						BitSet reached = ApplyDijkstraAllPairs.prunedTree(G,
+								s, parent, dist, weight, path);
+						row.setLength(0);
+						ApplyDijkstraAllPairs.formatRow(row, s, reached,
+								parent, dist, weight, path);
+						if (row.length() > chars.length)
+							chars = new char[Math.max(row.length(),
+									2 * chars.length)];
+						row.getChars(0, row.length(), chars, 0);
+						out.write(chars, 0, row.length());
+						if (progress != null)
+							progress.done();
+					}
+					out.flush();
+					file.getFD().sync();
+					complete = true;
+				} finally {
+					out.close();
+					if (!complete)
+						tmp.delete();
+				}
+				Files.move(tmp.toPath(), rows(from).toPath(),
+						StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			}
+			return !cancelled;
+		} finally {
+			try {
+				Runtime.getRuntime().removeShutdownHook(hook);
+			} catch (IllegalStateException e) {
+				// shutting down: the hook is waiting for this thread
+			}
+		}
+	}
+
+	/**
+	 * Copies every chunk to <tt>out</tt> in order of its sources.
+	 *
+	 * @throws IllegalStateException
+	 *             if a chunk is missing
+	 */
+	public void copyTo(OutputStream out) throws IOException {
+		for (int from = 0; from < V; from += chunk) {
+			if (!done(from))
+				throw new IllegalStateException("rows from " + from
+						+ " missing in " + dir);
+			Files.copy(rows(from).toPath(), out);
+		}
+		out.flush();
+	}
+
+	private File rows(int from) {
+		return new File(dir, "rows-" + from + ".txt");
+	}
+}
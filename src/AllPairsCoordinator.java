@@ -0,0 +1,329 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Scanner;
+
+/**
+ * AllPairsCoordinator spreads the work of ApplyDijkstraAllPairs over several
+ * worker processes on the same host
+ * (<tt>java ApplyDijkstraAllPairs -workers N [-shard k] [-engine x] [-order
+ * x]</tt>). The potentials
+ * and the reweighted graph G** that ApplyBellmanFord computed once are written
+ * to a shared directory, and N AllPairsWorker processes load them from there.
+ * The sources are cut into shards of consecutive rows, which the workers pull
+ * over a loopback socket one at a time and write to a file per shard.
+ * <p>
+ * A worker asks for every row of its shard before computing it. When no shard
+ * is left to hand out, an idle worker steals the second half of the rows the
+ * slowest worker has not started yet. A shard whose worker dies is handed out
+ * again, up to three times, and a new worker is started in its place. When
+ * every shard is finished the shard files are copied to standard output in
+ * order of their first source, so the output is the same as the one of a
+ * single process. <tt>-engine</tt> and <tt>-order</tt> are handed on to every
+ * worker; the flags that send the rows elsewhere than standard output, or
+ * run them in one process, are rejected by ApplyDijkstraAllPairs.
+ *
+ * @author SephyZhou
+ *
+ */
+public class AllPairsCoordinator {
+	private static final int MAX_ATTEMPTS = 3; // runs of a shard before
+												// giving up
+
+	// a range of sources [from, end); next is the first row not yet started
+	private static class Shard {
+		final int id;
+		final int from;
+		int next;
+		int end;
+		int attempts;
+		boolean running;
+		boolean done;
+
+		Shard(int id, int from, int end) {
+			this.id = id;
+			this.from = from;
+			this.next = from;
+			this.end = end;
+		}
+	}
+
+	private final int workers; // number of worker processes
+	private final int shardSize; // rows per shard, 0 to choose
+	private final List<String> options; // flags handed to every worker
+	private File dir; // shared directory
+	private ServerSocket server;
+	private final List<Shard> shards = new ArrayList<Shard>();
+	private final LinkedList<Shard> pending = new LinkedList<Shard>();
+	private final List<Process> processes = new ArrayList<Process>();
+	private int remaining; // shards not done
+	private int spawns; // workers started so far
+	private String failure; // why the run failed, null if it did not
+
+	/**
+	 * @param options
+	 *            flags of ApplyDijkstraAllPairs the workers compute their
+	 *            rows with (<tt>-engine</tt>, <tt>-order</tt>)
+	 */
+	public AllPairsCoordinator(int workers, int shardSize, List<String> options) {
+		if (workers < 1)
+			throw new IllegalArgumentException("need at least one worker");
+		this.workers = workers;
+		this.shardSize = shardSize;
+		this.options = options;
+	}
+
+	/**
+	 * Reads the output of ApplyBellmanFord from standard input, computes all
+	 * pairs with the workers and prints the result to standard output.
+	 *
+	 * @throws IllegalStateException
+	 *             if a shard failed too often
+	 */
+	public void run() throws IOException {
+		dir = Files.createTempDirectory("allpairs").toFile();
+		try {
+			// the input goes to the workers as it is read; only its header
+			// is parsed here
+			File input = new File(dir, "input.txt");
+			Files.copy(System.in, input.toPath());
+			Scanner header = new Scanner(input, "UTF-8");
+			header.next(); // Point
+			header.next(); // weight
+			int V = header.nextInt();
+			header.close();
+
+			int size = shardSize > 0 ? shardSize : Math.max(1, V
+					/ (4 * workers));
+			for (int s = 0; s < V; s += size)
+				shards.add(new Shard(shards.size(), s, Math.min(V, s + size)));
+			pending.addAll(shards);
+			remaining = shards.size();
+
+			server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+			Thread acceptor = new Thread() {
+				public void run() {
+					accept();
+				}
+			};
+			acceptor.setDaemon(true);
+			acceptor.start();
+			synchronized (this) {
+				for (int i = 0; i < workers && i < shards.size(); i++)
+					spawn();
+				while (remaining > 0 && failure == null) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						failure = "interrupted";
+					}
+				}
+				notifyAll(); // idle workers get QUIT
+			}
+			if (failure != null)
+				throw new IllegalStateException(failure);
+
+			List<Shard> ordered = new ArrayList<Shard>(shards);
+			Collections.sort(ordered, new Comparator<Shard>() {
+				public int compare(Shard a, Shard b) {
+					return a.from - b.from;
+				}
+			});
+			for (Shard shard : ordered)
+				Files.copy(new File(dir, "shard-" + shard.id + ".txt").toPath(),
+						System.out);
+			System.out.flush();
+		} finally {
+			if (server != null)
+				server.close();
+			synchronized (this) {
+				for (Process p : processes)
+					p.destroy();
+			}
+			File[] files = dir.listFiles();
+			if (files != null)
+				for (File f : files)
+					f.delete();
+			dir.delete();
+		}
+	}
+
+	// start one more worker process; called with the lock held
+	private void spawn() throws IOException {
+		int id = spawns++;
+		String java = System.getProperty("java.home") + File.separator
+				+ "bin" + File.separator + "java";
+		List<String> command = new ArrayList<String>();
+		Collections.addAll(command, java, "-cp",
+				System.getProperty("java.class.path"), "AllPairsWorker", ""
+						+ server.getLocalPort(), "" + id, dir.getPath());
+		command.addAll(options);
+		ProcessBuilder pb = new ProcessBuilder(command);
+		pb.redirectOutput(new File(dir, "worker-" + id + ".log"));
+		pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+		final Process p = pb.start();
+		processes.add(p);
+		Thread watch = new Thread() {
+			public void run() {
+				try {
+					p.waitFor();
+				} catch (InterruptedException e) {
+				}
+				lost(p);
+			}
+		};
+		watch.setDaemon(true);
+		watch.start();
+	}
+
+	// a worker process ended; start another one while work is left
+	private synchronized void lost(Process p) {
+		if (!processes.remove(p) || remaining == 0 || failure != null)
+			return;
+		if (spawns >= workers * (MAX_ATTEMPTS + 1)) {
+			if (processes.isEmpty())
+				failure = "all workers died";
+			notifyAll();
+			return;
+		}
+		try {
+			spawn();
+		} catch (IOException e) {
+			failure = "cannot start worker: " + e.getMessage();
+			notifyAll();
+		}
+	}
+
+	private void accept() {
+		while (true) {
+			final Socket socket;
+			try {
+				socket = server.accept();
+			} catch (IOException e) {
+				return; // server closed
+			}
+			Thread t = new Thread() {
+				public void run() {
+					serve(socket);
+				}
+			};
+			t.setDaemon(true);
+			t.start();
+		}
+	}
+
+	// conversation with one worker:
+	// worker READY -> SHARD id from | QUIT
+	// worker ROW id s -> GO | END
+	// worker DONE id
+	private void serve(Socket socket) {
+		Shard shard = null;
+		try {
+			socket.setTcpNoDelay(true);
+			BufferedReader in = new BufferedReader(new InputStreamReader(
+					socket.getInputStream(), "UTF-8"));
+			PrintWriter out = new PrintWriter(new OutputStreamWriter(
+					socket.getOutputStream(), "UTF-8"), true);
+			String line;
+			while ((line = in.readLine()) != null) {
+				String[] tok = line.split(" ");
+				if (tok[0].equals("READY")) {
+					shard = assign();
+					if (shard == null) {
+						out.println("QUIT");
+						break;
+					}
+					out.println("SHARD " + shard.id + " " + shard.from);
+				} else if (tok[0].equals("ROW")) {
+					out.println(grant(shard, Integer.parseInt(tok[2])) ? "GO"
+							: "END");
+				} else if (tok[0].equals("DONE")) {
+					finish(shard);
+					shard = null;
+				}
+			}
+		} catch (IOException e) {
+			// the worker is gone; its shard is handed out again below
+		} finally {
+			if (shard != null)
+				fail(shard);
+			try {
+				socket.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	// next shard for an idle worker: a pending one, else the second half of
+	// the rows a busy worker has not started; waits while neither exists and
+	// returns null once everything is done
+	private synchronized Shard assign() {
+		while (remaining > 0 && failure == null) {
+			if (!pending.isEmpty()) {
+				Shard shard = pending.removeFirst();
+				shard.running = true;
+				return shard;
+			}
+			Shard victim = null;
+			for (Shard shard : shards)
+				if (shard.running && shard.end - shard.next >= 2
+						&& (victim == null || shard.end - shard.next > victim.end
+								- victim.next))
+					victim = shard;
+			if (victim != null) {
+				int mid = victim.next + (victim.end - victim.next) / 2;
+				Shard stolen = new Shard(shards.size(), mid, victim.end);
+				victim.end = mid;
+				stolen.running = true;
+				shards.add(stolen);
+				remaining++;
+				return stolen;
+			}
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				return null;
+			}
+		}
+		return null;
+	}
+
+	// may the worker of shard compute row s?
+	private synchronized boolean grant(Shard shard, int s) {
+		if (shard == null || s != shard.next || s >= shard.end)
+			return false;
+		shard.next++;
+		return true;
+	}
+
+	private synchronized void finish(Shard shard) {
+		shard.running = false;
+		shard.done = true;
+		remaining--;
+		notifyAll();
+	}
+
+	private synchronized void fail(Shard shard) {
+		shard.running = false;
+		if (++shard.attempts >= MAX_ATTEMPTS) {
+			failure = "rows " + shard.from + " to " + (shard.end - 1)
+					+ " failed " + MAX_ATTEMPTS + " times";
+		} else {
+			shard.next = shard.from;
+			pending.addFirst(shard);
+		}
+		notifyAll();
+	}
+}
@@ -0,0 +1,193 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.BitSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AllPairsPipeline prints the rows of ApplyDijkstraAllPairs in three stages
+ * so formatting no longer holds up the searches
+ * (<tt>java ApplyDijkstraAllPairs [-threads n] [-file name]</tt>):
+ * <ol>
+ * <li>the calling thread searches one source after the other (prunedTree())
+ * into the arrays of a free row;
+ * <li><tt>threads</tt> formatting threads render finished rows
+ * (formatRow()) into bytes, in any order;
+ * <li>one writer thread copies the bytes to a channel strictly in order of
+ * the sources, through a buffer it flushes when full.
+ * </ol>
+ * There are <tt>4 threads</tt> rows, handed back to the searches once
+ * written, so a slow stage stalls the ones before it instead of piling up
+ * rows, and the row of source <tt>s</tt> waits for the writer in slot
+ * <tt>s % rows</tt>. The bytes written are the same as the ones of the
+ * sequential loop.
+ *
+ * @author SephyZhou
+ *
+ */
+public class AllPairsPipeline {
+	private static final int BUFFER = 1 << 16; // bytes the writer collects
+
+	private final CompactDigraph G;
+	private final int threads;
+	private final BlockingQueue<Row> free; // rows not in use
+	private final Row[] slots; // formatted rows waiting for the writer
+	private Throwable failure; // why a stage stopped, null if none
+
+	// the tree of one source and its text
+	private class Row implements Runnable {
+		final int[] parent, path;
+		final double[] dist, weight;
+		final BitSet reached = new BitSet(); // the vertices s reaches
+		final StringBuilder text = new StringBuilder();
+		int s;
+		byte[] bytes = new byte[BUFFER]; // the text, reused from row to row
+		int length; // bytes of it in use
+
+		Row(int V) {
+			parent = new int[V];
+			path = new int[V];
+			dist = new double[V];
+			weight = new double[V];
+		}
+
+		public void run() {
+			try {
+				text.setLength(0);
+				ApplyDijkstraAllPairs.formatRow(text, s, reached, parent,
+						dist, weight, path);
+				length = text.length();
+				if (length > bytes.length)
+					bytes = new byte[Math.max(length, 2 * bytes.length)];
+				for (int i = 0; i < length; i++)
+					bytes[i] = (byte) text.charAt(i); // the rows are ASCII
+				formatted(this);
+			} catch (Throwable e) {
+				fail(e);
+			}
+		}
+	}
+
+	public AllPairsPipeline(CompactDigraph G, int threads) {
+		this.G = G;
+		this.threads = Math.max(threads, 1);
+		int rows = 4 * this.threads;
+		free = new ArrayBlockingQueue<Row>(rows);
+		slots = new Row[rows];
+		for (int i = 0; i < rows; i++)
+			free.add(new Row(G.V()));
+	}
+
+	/**
+	 * Prints the rows of every source to <tt>out</tt>, counting them in
+	 * <tt>progress</tt> if it is not null.
+	 *
+	 * @throws IOException
+	 *             if the channel cannot be written
+	 */
+	public void run(final WritableByteChannel out, Progress progress)
+			throws IOException {
+		ExecutorService format = Executors.newFixedThreadPool(threads);
+		Thread writer = new Thread("writer") {
+			public void run() {
+				write(out);
+			}
+		};
+		writer.start();
+		try {
+			for (int s = 0; s < G.V(); s++) {
+				Row row = take();
+				if (row == null)
+					break;
+				row.s = s;
+				BitSet reached = ApplyDijkstraAllPairs.prunedTree(G, s,
+						row.parent, row.dist, row.weight, row.path);
+				row.reached.clear();
+				row.reached.or(reached); // reused by the next search
+				if (progress != null)
+					progress.done();
+				format.execute(row);
+			}
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			fail(e);
+		} catch (RuntimeException e) {
+			fail(e);
+		} finally {
+			format.shutdownNow();
+		}
+		synchronized (this) {
+			if (failure instanceof IOException)
+				throw (IOException) failure;
+			if (failure != null)
+				throw new IllegalStateException(failure);
+		}
+	}
+
+	// a free row, or null once a stage has failed
+	private Row take() throws InterruptedException {
+		while (true) {
+			synchronized (this) {
+				if (failure != null)
+					return null;
+			}
+			Row row = free.poll(100, TimeUnit.MILLISECONDS);
+			if (row != null)
+				return row;
+		}
+	}
+
+	private synchronized void formatted(Row row) {
+		slots[row.s % slots.length] = row;
+		notifyAll();
+	}
+
+	private synchronized void fail(Throwable e) {
+		if (failure == null)
+			failure = e;
+		notifyAll();
+	}
+
+	// the writer: the rows in order of their source, then the rest of the
+	// buffer
+	private void write(WritableByteChannel out) {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER);
+		try {
+			for (int s = 0; s < G.V(); s++) {
+				Row row;
+				synchronized (this) {
+					while ((row = slots[s % slots.length]) == null
+							&& failure == null)
+						wait();
+					if (failure != null)
+						return;
+					slots[s % slots.length] = null;
+				}
+				for (int i = 0; i < row.length;) {
+					int n = Math.min(buffer.remaining(), row.length - i);
+					buffer.put(row.bytes, i, n);
+					i += n;
+					if (!buffer.hasRemaining())
+						drain(out, buffer);
+				}
+				free.add(row);
+			}
+			drain(out, buffer);
+		} catch (Throwable e) {
+			fail(e);
+		}
+	}
+
+	private static void drain(WritableByteChannel out, ByteBuffer buffer)
+			throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			out.write(buffer);
+		buffer.clear();
+	}
+}
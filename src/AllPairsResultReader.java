@@ -0,0 +1,90 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * AllPairsResultReader looks up single rows of a result written by
+ * AllPairsResultWriter. Every lookup reads one index slot and one row, so it
+ * takes the same time for the first and the last source.
+ *
+ * java AllPairsResultReader name s [s ...]
+ *
+ * @author SephyZhou
+ *
+ */
+public class AllPairsResultReader {
+	private final RandomAccessFile data;
+	private final RandomAccessFile index;
+	private final int V;
+	private final int format;
+
+	/**
+	 * Opens the result <tt>name</tt> (the path without extension).
+	 *
+	 * @throws IllegalArgumentException
+	 *             if <tt>name.idx</tt> is not an index of a result
+	 */
+	public AllPairsResultReader(String name) throws IOException {
+		index = new RandomAccessFile(name + ".idx", "r");
+		if (index.readInt() != AllPairsResultWriter.MAGIC)
+			throw new IllegalArgumentException(name
+					+ ".idx is not an all-pairs result index");
+		V = index.readInt();
+		format = index.readInt();
+		data = new RandomAccessFile(name + ".dat", "r");
+	}
+
+	// number of sources
+	public int V() {
+		return V;
+	}
+
+	// format of the rows
+	public int format() {
+		return format;
+	}
+
+	// has the row of source s been written?
+	public boolean hasRow(int s) throws IOException {
+		return offset(s) >= 0;
+	}
+
+	/**
+	 * Returns the row of source <tt>s</tt>.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the row of <tt>s</tt> is missing
+	 */
+	public byte[] row(int s) throws IOException {
+		long at = offset(s);
+		if (at < 0)
+			throw new IllegalArgumentException("no row for source " + s);
+		byte[] row = new byte[index.readInt()];
+		data.seek(at);
+		data.readFully(row);
+		return row;
+	}
+
+	// offset of the row of s; leaves index positioned at its length
+	private long offset(int s) throws IOException {
+		if (s < 0 || s >= V)
+			throw new IndexOutOfBoundsException("vertex " + s
+					+ " is not between 0 and " + (V - 1));
+		index.seek(AllPairsResultWriter.HEADER + (long) s
+				* AllPairsResultWriter.SLOT);
+		return index.readLong();
+	}
+
+	public void close() throws IOException {
+		data.close();
+		index.close();
+	}
+
+	public static void main(String[] args) throws IOException {
+		AllPairsResultReader result = new AllPairsResultReader(args[0]);
+		for (int i = 1; i < args.length; i++) {
+			System.out.write(result.row(Integer.parseInt(args[i])));
+		}
+		System.out.flush();
+		result.close();
+	}
+}
@@ -0,0 +1,117 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+/**
+ * AllPairsResultWriter stores the rows of an all-pairs run on disk as they
+ * are computed, so the run never holds more than a batch of rows in memory.
+ * A result named <tt>name</tt> consists of two files:
+ * <ul>
+ * <li><tt>name.dat</tt>, the rows one after the other, written a batch at a
+ * time;
+ * <li><tt>name.idx</tt>, a header (magic number, <em>V</em>, row format)
+ * followed by one slot per source holding the offset of its row in
+ * <tt>name.dat</tt> (a long, -1 while the row is missing) and its length (an
+ * int).
+ * </ul>
+ * The index lets AllPairsResultReader fetch the row of any source without
+ * scanning the data file.
+ *
+ * @author SephyZhou
+ *
+ */
+public class AllPairsResultWriter {
+	static final int MAGIC = 0x41505231; // "APR1"
+	static final int HEADER = 12; // bytes before the first index slot
+	static final int SLOT = 12; // bytes per index slot
+
+	/** Row format: the text printed by ApplyDijkstraAllPairs. */
+	public static final int TEXT = 0;
+	/** Row format: the shortest paths tree of AllPairsTreeFormat. */
+	public static final int TREE = 1;
+
+	private final OutputStream data;
+	private final RandomAccessFile index;
+	private final int batch; // rows per chunk
+	private final ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+	private final int[] rows; // sources of the rows in chunk
+	private final int[] lengths; // their lengths
+	private int n; // number of rows in chunk
+	private long offset; // offset of chunk in the data file
+
+	/**
+	 * Creates the files of a result for <tt>V</tt> sources.
+	 *
+	 * @param name
+	 *            path of the result without extension
+	 * @param V
+	 *            the number of sources
+	 * @param format
+	 *            the format of the rows
+	 * @param batch
+	 *            the number of rows collected before they are written
+	 */
+	public AllPairsResultWriter(String name, int V, int format, int batch)
+			throws IOException {
+		if (batch < 1)
+			throw new IllegalArgumentException("batch must be positive");
+		this.batch = batch;
+		rows = new int[batch];
+		lengths = new int[batch];
+		data = new BufferedOutputStream(new FileOutputStream(name + ".dat"),
+				1 << 16);
+
+		DataOutputStream idx = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(name + ".idx")));
+		idx.writeInt(MAGIC);
+		idx.writeInt(V);
+		idx.writeInt(format);
+		for (int s = 0; s < V; s++) {
+			idx.writeLong(-1);
+			idx.writeInt(0);
+		}
+		idx.close();
+		index = new RandomAccessFile(name + ".idx", "rw");
+	}
+
+	/**
+	 * Adds the row of source <tt>s</tt>.
+	 */
+	public void write(int s, byte[] row) throws IOException {
+		rows[n] = s;
+		lengths[n] = row.length;
+		n++;
+		chunk.write(row);
+		if (n == batch)
+			flush();
+	}
+
+	// write the chunk to the data file and its slots to the index
+	private void flush() throws IOException {
+		chunk.writeTo(data);
+		data.flush();
+		long at = offset;
+		for (int i = 0; i < n; i++) {
+			index.seek(HEADER + (long) rows[i] * SLOT);
+			index.writeLong(at);
+			index.writeInt(lengths[i]);
+			at += lengths[i];
+		}
+		offset = at;
+		chunk.reset();
+		n = 0;
+	}
+
+	/**
+	 * Writes the rows still buffered and closes the files.
+	 */
+	public void close() throws IOException {
+		flush();
+		data.close();
+		index.close();
+	}
+}
@@ -0,0 +1,80 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * AllPairsTreeFormat is the compact row format of an all-pairs result
+ * (<tt>java ApplyDijkstraAllPairs -out name -format tree</tt>). Instead of
+ * printing every path in full, a row stores the shortest paths tree of its
+ * source: for every vertex <tt>t</tt> the vertex before it on the path (an
+ * int, -1 for the source and for unreachable vertices), the length of the
+ * path in the original graph G (a double, infinite if there is no path) and
+ * the original weight of the last edge (a double). Paths from the same source
+ * share their prefixes in the tree, so a row takes 20 <em>V</em> bytes however
+ * long the paths are, and a path is only expanded when it is rendered.
+ * <p>
+ * The main method renders a result back into the text printed by
+ * ApplyDijkstraAllPairs, for all sources or for the given ones.
+ *
+ * java AllPairsTreeFormat name [s ...]
+ *
+ * @author SephyZhou
+ *
+ */
+public class AllPairsTreeFormat {
+	static final int BYTES_PER_VERTEX = 4 + 8 + 8;
+
+	/**
+	 * Encodes a shortest paths tree as filled in by
+	 * ApplyDijkstraAllPairs.tree().
+	 */
+	public static byte[] encode(int[] parent, double[] dist, double[] weight) {
+		ByteBuffer row = ByteBuffer.allocate(parent.length * BYTES_PER_VERTEX);
+		for (int t = 0; t < parent.length; t++) {
+			row.putInt(parent[t]);
+			row.putDouble(dist[t]);
+			row.putDouble(weight[t]);
+		}
+		return row.array();
+	}
+
+	/**
+	 * Decodes a row into the given arrays of length <em>V</em>.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the row does not hold <em>V</em> vertices
+	 */
+	public static void decode(byte[] bytes, int[] parent, double[] dist,
+			double[] weight) {
+		if (bytes.length != parent.length * BYTES_PER_VERTEX)
+			throw new IllegalArgumentException("row of " + bytes.length
+					+ " bytes does not hold " + parent.length + " vertices");
+		ByteBuffer row = ByteBuffer.wrap(bytes);
+		for (int t = 0; t < parent.length; t++) {
+			parent[t] = row.getInt();
+			dist[t] = row.getDouble();
+			weight[t] = row.getDouble();
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		AllPairsResultReader result = new AllPairsResultReader(args[0]);
+		int V = result.V();
+		int[] parent = new int[V];
+		double[] dist = new double[V];
+		double[] weight = new double[V];
+		int[] path = new int[V];
+		int n = args.length > 1 ? args.length - 1 : V;
+		for (int i = 0; i < n; i++) {
+			int s = args.length > 1 ? Integer.parseInt(args[i + 1]) : i;
+			byte[] row = result.row(s);
+			if (result.format() == AllPairsResultWriter.TREE) {
+				decode(row, parent, dist, weight);
+				row = ApplyDijkstraAllPairs.formatRow(s, parent, dist, weight,
+						path).getBytes("UTF-8");
+			}
+			System.out.write(row);
+		}
+		System.out.flush();
+		result.close();
+	}
+}
@@ -0,0 +1,87 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+
+/**
+ * AllPairsWorker is one worker process of AllPairsCoordinator. It loads the
+ * potentials and the reweighted graph G** from the shared directory, then
+ * asks the coordinator for shards of sources and writes the rows of every
+ * shard, in the format of ApplyDijkstraAllPairs, to the file
+ * <tt>shard-id.txt</tt> of that directory.
+ *
+ * java AllPairsWorker port id directory [-engine x] [-order x]
+ *
+ * @author SephyZhou
+ *
+ */
+public class AllPairsWorker {
+
+	public static void main(String[] args) throws IOException {
+		int port = Integer.parseInt(args[0]);
+		String id = args[1];
+		File dir = new File(args[2]);
+		for (int i = 3; i < args.length; i++) {
+			if (args[i].equals("-engine"))
+				ApplyDijkstraAllPairs.engine = args[++i];
+			else if (args[i].equals("-order"))
+				ApplyDijkstraAllPairs.order = args[++i];
+		}
+
+		// StdIn reads System.in from the moment it is first used
+		System.setIn(new FileInputStream(new File(dir, "input.txt")));
+		ApplyDijkstraAllPairs.readGraphFromBF();
+		CompactDigraph G = new CompactDigraph();
+		int[] parent = new int[G.V()];
+		double[] dist = new double[G.V()];
+		double[] weight = new double[G.V()];
+		int[] path = new int[G.V()];
+		StringBuilder row = new StringBuilder();
+
+		Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+		socket.setTcpNoDelay(true);
+		BufferedReader in = new BufferedReader(new InputStreamReader(
+				socket.getInputStream(), "UTF-8"));
+		PrintWriter out = new PrintWriter(new OutputStreamWriter(
+				socket.getOutputStream(), "UTF-8"), true);
+		out.println("READY");
+		String line;
+		while ((line = in.readLine()) != null) {
+			String[] tok = line.split(" ");
+			if (!tok[0].equals("SHARD"))
+				break;
+			String shard = tok[1];
+			File tmp = new File(dir, "shard-" + shard + "." + id);
+			Writer w = new BufferedWriter(new OutputStreamWriter(
+					new FileOutputStream(tmp), "UTF-8"));
+			for (int s = Integer.parseInt(tok[2]);; s++) {
+				out.println("ROW " + shard + " " + s);
+				if (!"GO".equals(in.readLine()))
+					break;
+				BitSet reached = ApplyDijkstraAllPairs.prunedTree(G, s,
+						parent, dist, weight, path);
+				row.setLength(0);
+				ApplyDijkstraAllPairs.formatRow(row, s, reached, parent, dist,
+						weight, path);
+				w.append(row);
+			}
+			w.close();
+			Files.move(tmp.toPath(), new File(dir, "shard-" + shard + ".txt")
+					.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			out.println("DONE " + shard);
+			out.println("READY");
+		}
+		socket.close();
+	}
+}
@@ -1,3 +1,5 @@
+import java.io.File;
+import java.io.IOException;
 import java.util.Iterator;
 
 /**
@@ -11,13 +13,18 @@ import java.util.Iterator;
  * @author SephyZhou
  * 
  */
-public class ApplyBellmanFord {
+public class ApplyBellmanFord implements Potentials {
+	private CompactDigraph g; // the graph searched
 	private double[] distTo; // distTo[v] = distance of shortest s->v path
-	private DirectedEdge[] edgeTo; // edgeTo[v] = last edge on shortest s->v
-									// path
+	private int[] edgeTo; // edgeTo[v] = index of last edge on shortest s->v
+							// path, -1 if none
 	private boolean[] onQueue; // onQueue[v] = is v currently on the queue?
-	private Queue<Integer> queue; // queue of vertices to relax
-	private int cost; // number of calls to relax()
+	private IntDeque queue; // queue of vertices to relax
+	private int[] scratch; // path buffer of pathTo(v, visitor)
+	private int cost; // number of edges relaxed
+	private long scans; // number of vertices taken off the queue
+	private long relaxations; // number of distances lowered
+	private int passes; // number of passes over the queue
 	private Iterable<DirectedEdge> cycle; // negative cycle (or null if no such
 											// cycle)
 	public static boolean PIPELINE = CreateAuxiliaryGraph.PIPELINE;
@@ -34,40 +41,267 @@ public class ApplyBellmanFord {
 	 *             unless 0 &le; <tt>s</tt> &le; <tt>V</tt> - 1
 	 */
 	public ApplyBellmanFord(CreateAuxiliaryGraph g, int s) {
+		this(new CompactDigraph(g), s);
+	}
+
+	/**
+	 * Computes a shortest paths tree from <tt>s</tt> to every other vertex in
+	 * the compact digraph <tt>g</tt>.
+	 * 
+	 * @param g
+	 *            the digraph
+	 * @param s
+	 *            the source vertex
+	 */
+	public ApplyBellmanFord(CompactDigraph g, int s) {
+		this(g, s, discipline);
+	}
+
+	/**
+	 * Computes a shortest paths tree from <tt>s</tt> to every other vertex in
+	 * the compact digraph <tt>g</tt>, taking the vertices to relax in the
+	 * given order:
+	 * <ul>
+	 * <li><tt>fifo</tt>: first in, first out;
+	 * <li><tt>slf</tt>: small label first, a vertex whose distance is below
+	 * that of the head of the queue goes to the head;
+	 * <li><tt>lll</tt>: large label last, the head of the queue goes to the
+	 * tail while its distance is above the average of the queue;
+	 * <li><tt>slf-lll</tt>: both;
+	 * <li><tt>gr</tt>: Goldberg-Radzik, every pass relaxes the vertices
+	 * lowered in the last pass and everything reachable from them over edges
+	 * of reduced cost at most 0, in topological order of those edges;
+	 * <li><tt>yen</tt>: every pass sweeps the vertices in increasing order
+	 * relaxing only the edges to higher vertices, then in decreasing order
+	 * relaxing only the edges to lower ones.
+	 * </ul>
+	 *
+	 * @throws IllegalArgumentException
+	 *             if <tt>discipline</tt> is not one of these
+	 */
+	public ApplyBellmanFord(CompactDigraph g, int s, String discipline) {
+		this.g = g;
 		distTo = new double[g.V()];
-		edgeTo = new DirectedEdge[g.V()];
+		edgeTo = new int[g.V()];
 		onQueue = new boolean[g.V()];
-		for (int v = 0; v < g.V(); v++)
+		for (int v = 0; v < g.V(); v++) {
 			distTo[v] = Double.POSITIVE_INFINITY;
+			edgeTo[v] = -1;
+		}
 		distTo[s] = 0.0;
 
+		// an acyclic graph has no negative cycle and needs a single pass
+		int[] topological = g.topologicalOrder();
+		if (topological != null) {
+			for (int v : topological)
+				if (distTo[v] < Double.POSITIVE_INFINITY)
+					relaxInOrder(v);
+			assert check(s);
+			return;
+		}
+
 		// Bellman-Ford algorithm
-		queue = new Queue<Integer>();
-		queue.enqueue(s);
+		queue = new IntDeque(g.V());
+		if (discipline.equals("fifo"))
+			queue(s, false, false);
+		else if (discipline.equals("slf"))
+			queue(s, true, false);
+		else if (discipline.equals("lll"))
+			queue(s, false, true);
+		else if (discipline.equals("slf-lll"))
+			queue(s, true, true);
+		else if (discipline.equals("gr"))
+			goldbergRadzik(s);
+		else if (discipline.equals("yen"))
+			yen(s);
+		else
+			throw new IllegalArgumentException("unknown queue discipline "
+					+ discipline + " (use fifo, slf, lll, slf-lll, gr or yen)");
+
+		assert check(s);
+	}
+
+	// relax edge e; returns true if the distance to its head was lowered
+	private boolean relax(int e) {
+		int v = g.from(e), w = g.to(e);
+		boolean lowered = false;
+		if (distTo[w] > distTo[v] + g.weight(e)) {
+			distTo[w] = distTo[v] + g.weight(e);
+			edgeTo[w] = e;
+			relaxations++;
+			lowered = true;
+		}
+		if (cost++ % g.V() == 0)
+			findNegativeCycle();
+		return lowered;
+	}
+
+	// queue-based Bellman-Ford; a pass takes as many vertices off the queue
+	// as it held when the pass began
+	private void queue(int s, boolean smallFirst, boolean largeLast) {
+		double sum = 0.0; // sum of the distances of the queued vertices
+		queue.addLast(s);
 		onQueue[s] = true;
+		int pass = 0; // vertices left in this pass
 		while (!queue.isEmpty() && !hasNegativeCycle()) {
-			int v = queue.dequeue();
+			if (pass == 0) {
+				passes++;
+				pass = queue.size();
+			}
+			if (largeLast) {
+				double average = sum / queue.size();
+				for (int i = queue.size(); i > 1
+						&& distTo[queue.peekFirst()] > average; i--)
+					queue.addLast(queue.removeFirst());
+			}
+			int v = queue.removeFirst();
+			pass--;
+			scans++;
 			onQueue[v] = false;
-			relax(g, v);
+			sum -= distTo[v];
+			for (int e = g.begin(v); e < g.end(v); e++) {
+				int w = g.to(e);
+				double before = distTo[w];
+				if (!relax(e))
+					continue;
+				if (onQueue[w]) {
+					sum += distTo[w] - before;
+				} else {
+					if (smallFirst && !queue.isEmpty()
+							&& distTo[w] < distTo[queue.peekFirst()])
+						queue.addFirst(w);
+					else
+						queue.addLast(w);
+					onQueue[w] = true;
+					sum += distTo[w];
+				}
+			}
 		}
+	}
 
-		assert check(g, s);
+	// Goldberg-Radzik: every pass finds the vertices reachable from the ones
+	// lowered in the last pass over edges v->w with distTo[v] + weight <=
+	// distTo[w], and relaxes them in topological order of those edges
+	private void goldbergRadzik(int s) {
+		int V = g.V();
+		int[] seen = new int[V]; // pass that last visited a vertex
+		int[] order = new int[V]; // vertices of the pass, in postorder
+		int[] frame = new int[V]; // depth-first search path ...
+		int[] next = new int[V]; // ... and next edge of every vertex on it
+		IntDeque lowered = queue;
+		lowered.addLast(s);
+		onQueue[s] = true;
+		while (!lowered.isEmpty() && !hasNegativeCycle()) {
+			passes++;
+			int n = 0;
+			while (!lowered.isEmpty()) {
+				int r = lowered.removeFirst();
+				onQueue[r] = false;
+				if (seen[r] == passes || !improves(r))
+					continue;
+				seen[r] = passes;
+				int depth = 0;
+				frame[depth] = r;
+				next[depth++] = g.begin(r);
+				while (depth > 0) {
+					int v = frame[depth - 1];
+					if (next[depth - 1] < g.end(v)) {
+						int e = next[depth - 1]++;
+						int w = g.to(e);
+						if (seen[w] != passes
+								&& distTo[v] + g.weight(e) <= distTo[w]) {
+							seen[w] = passes;
+							frame[depth] = w;
+							next[depth++] = g.begin(w);
+						}
+					} else {
+						order[n++] = v;
+						depth--;
+					}
+				}
+			}
+			for (int i = n - 1; i >= 0 && !hasNegativeCycle(); i--) {
+				int v = order[i];
+				scans++;
+				for (int e = g.begin(v); e < g.end(v); e++) {
+					int w = g.to(e);
+					if (relax(e) && !onQueue[w]) {
+						lowered.addLast(w);
+						onQueue[w] = true;
+					}
+				}
+			}
+		}
 	}
 
-	// relax vertex v and put other endpoints on queue if changed
-	private void relax(CreateAuxiliaryGraph g, int v) {
-		for (DirectedEdge e : g.adj(v)) {
-			int w = e.to();
-			if (distTo[w] > distTo[v] + e.weight()) {
-				distTo[w] = distTo[v] + e.weight();
-				edgeTo[w] = e;
-				if (!onQueue[w]) {
-					queue.enqueue(w);
-					onQueue[w] = true;
+	// has v an edge whose head it can lower?
+	private boolean improves(int v) {
+		for (int e = g.begin(v); e < g.end(v); e++)
+			if (distTo[v] + g.weight(e) < distTo[g.to(e)])
+				return true;
+		return false;
+	}
+
+	// Yen: every pass relaxes the edges to higher vertices in increasing
+	// order of vertex, then the edges to lower vertices in decreasing order,
+	// from the vertices lowered since they were last swept
+	private void yen(int s) {
+		int V = g.V();
+		boolean[] up = new boolean[V]; // to sweep upwards
+		boolean[] down = new boolean[V]; // to sweep downwards
+		up[s] = down[s] = true;
+		boolean changed = true;
+		while (changed && !hasNegativeCycle()) {
+			passes++;
+			changed = false;
+			for (int v = 0; v < V && !hasNegativeCycle(); v++) {
+				if (!up[v])
+					continue;
+				up[v] = false;
+				scans++;
+				for (int e = g.begin(v); e < g.end(v); e++) {
+					int w = g.to(e);
+					if (w >= v && relax(e))
+						changed = up[w] = down[w] = true;
+				}
+			}
+			for (int v = V - 1; v >= 0 && !hasNegativeCycle(); v--) {
+				if (!down[v])
+					continue;
+				down[v] = false;
+				scans++;
+				for (int e = g.begin(v); e < g.end(v); e++) {
+					int w = g.to(e);
+					if (w < v && relax(e))
+						changed = up[w] = down[w] = true;
 				}
 			}
-			if (cost++ % g.V() == 0)
-				findNegativeCycle();
+		}
+	}
+
+	// number of vertices taken off the queue (or swept) and relaxed
+	public long scans() {
+		return scans;
+	}
+
+	// number of times a distance was lowered
+	public long relaxations() {
+		return relaxations;
+	}
+
+	// number of passes: rounds of the queue, or sweeps of gr and yen
+	public int passes() {
+		return passes;
+	}
+
+	// relax vertex v of an acyclic graph, visited in topological order
+	private void relaxInOrder(int v) {
+		for (int e = g.begin(v); e < g.end(v); e++) {
+			int w = g.to(e);
+			if (distTo[w] > distTo[v] + g.weight(e)) {
+				distTo[w] = distTo[v] + g.weight(e);
+				edgeTo[w] = e;
+			}
 		}
 	}
 
@@ -97,8 +331,8 @@ public class ApplyBellmanFord {
 		int V = edgeTo.length;
 		EdgeWeightedDigraph spt = new EdgeWeightedDigraph(V);
 		for (int v = 0; v < V; v++)
-			if (edgeTo[v] != null)
-				spt.addEdge(edgeTo[v]);
+			if (edgeTo[v] != -1)
+				spt.addEdge(g.edge(edgeTo[v]));
 
 		EdgeWeightedDirectedCycle finder = new EdgeWeightedDirectedCycle(spt);
 		cycle = finder.cycle();
@@ -154,19 +388,116 @@ public class ApplyBellmanFord {
 		if (!hasPathTo(v))
 			return null;
 		Stack<DirectedEdge> path = new Stack<DirectedEdge>();
-		for (DirectedEdge e = edgeTo[v]; e != null; e = edgeTo[e.from()]) {
-			path.push(e);
+		for (int e = edgeTo[v]; e != -1; e = edgeTo[g.from(e)]) {
+			path.push(g.edge(e));
 		}
 		return path;
 	}
 
+	// potentials from s, computed on a renumbered copy of g when a vertex
+	// ordering was requested; s itself is kept out of the ordering since the
+	// extra vertex of G* is adjacent to every vertex. Which negative cycle is
+	// found, and where it starts, depends on the numbering, so a cycle found
+	// on the copy is found again on g, as the run without an ordering does
+	static Potentials solve(CompactDigraph g, int s) {
+		if (order == null)
+			return potentials(g, s);
+		int[] perm = VertexOrdering.order(g, order, s);
+		Potentials p = VertexOrdering.restore(
+				potentials(VertexOrdering.relabel(g, perm), perm[s]), perm);
+		if (p.hasNegativeCycle())
+			return potentials(g, s);
+		return p;
+	}
+
+	// the settings that decide what solve() finds: the potentials may differ
+	// in the last bits, and the negative cycle entirely, from one to another
+	static String settings() {
+		String settings = "solver=" + solver + " queue=" + discipline
+				+ " order=" + order;
+		if (solver.equals("parallel"))
+			settings += " threads=" + threads;
+		return settings;
+	}
+
+	// potentials from s with the solver chosen by -solver
+	static Potentials potentials(CompactDigraph g, int s) {
+		if (solver.equals("scc"))
+			return new SCCPotentials(g, s);
+		if (solver.equals("goldberg"))
+			return new GoldbergPotentials(g, s);
+		if (solver.equals("parallel"))
+			return new ParallelBellmanFord(g, s, threads);
+		if (!solver.equals("spfa"))
+			throw new IllegalArgumentException("unknown solver " + solver
+					+ " (use spfa, scc, goldberg or parallel)");
+		ApplyBellmanFord sp = new ApplyBellmanFord(g, s);
+		if (stats)
+			System.err.printf("queue %s: %d passes, %d scans, %d relaxations%n",
+					discipline, sp.passes(), sp.scans(), sp.relaxations());
+		return sp;
+	}
+
+	/**
+	 * Writes the vertices of a shortest path from the source <tt>s</tt> to
+	 * vertex <tt>v</tt> into <tt>path</tt>, the source first, without
+	 * allocating anything.
+	 * 
+	 * @param v
+	 *            the destination vertex
+	 * @param path
+	 *            room for up to <tt>V</tt> vertices
+	 * @return the number of vertices on the path, 0 if there is no such path
+	 * @throws UnsupportedOperationException
+	 *             if there is a negative cost cycle reachable from the source
+	 *             vertex <tt>s</tt>
+	 */
+	public int pathTo(int v, int[] path) {
+		if (hasNegativeCycle())
+			throw new UnsupportedOperationException(
+					"Negative cost cycle exists");
+		if (!hasPathTo(v))
+			return 0;
+		int k = 1;
+		for (int e = edgeTo[v]; e != -1; e = edgeTo[g.from(e)])
+			k++;
+		int i = k;
+		path[--i] = v;
+		for (int e = edgeTo[v]; e != -1; e = edgeTo[g.from(e)])
+			path[--i] = g.from(e);
+		return k;
+	}
+
+	/**
+	 * Hands the edges of a shortest path from the source <tt>s</tt> to vertex
+	 * <tt>v</tt> to <tt>visitor</tt>, in order from the source, without
+	 * allocating anything after the first call.
+	 * 
+	 * @param v
+	 *            the destination vertex
+	 * @param visitor
+	 *            receives every edge of the path
+	 * @throws UnsupportedOperationException
+	 *             if there is a negative cost cycle reachable from the source
+	 *             vertex <tt>s</tt>
+	 */
+	public void pathTo(int v, PathVisitor visitor) {
+		if (scratch == null)
+			scratch = new int[distTo.length];
+		int k = pathTo(v, scratch);
+		for (int i = 1; i < k; i++) {
+			int e = edgeTo[scratch[i]];
+			visitor.visit(g.from(e), g.to(e), g.weight(e));
+		}
+	}
+
 	// check optimality conditions: either
 	// (i) there exists a negative cycle reacheable from s
 	// or
 	// (ii) for all edges e = v->w: distTo[w] <= distTo[v] + e.weight()
 	// (ii') for all edges e = v->w on the SPT: distTo[w] == distTo[v] +
 	// e.weight()
-	private boolean check(CreateAuxiliaryGraph g, int s) {
+	private boolean check(int s) {
 
 		// has a negative cycle
 		if (hasNegativeCycle()) {
@@ -185,14 +516,14 @@ public class ApplyBellmanFord {
 		else {
 
 			// check that distTo[v] and edgeTo[v] are consistent
-			if (distTo[s] != 0.0 || edgeTo[s] != null) {
+			if (distTo[s] != 0.0 || edgeTo[s] != -1) {
 				System.err.println("distanceTo[s] and edgeTo[s] inconsistent");
 				return false;
 			}
 			for (int v = 0; v < g.V(); v++) {
 				if (v == s)
 					continue;
-				if (edgeTo[v] == null && distTo[v] != Double.POSITIVE_INFINITY) {
+				if (edgeTo[v] == -1 && distTo[v] != Double.POSITIVE_INFINITY) {
 					System.err.println("distTo[] and edgeTo[] inconsistent");
 					return false;
 				}
@@ -200,27 +531,25 @@ public class ApplyBellmanFord {
 
 			// check that all edges e = v->w satisfy distTo[w] <= distTo[v] +
 			// e.weight()
-			for (int v = 0; v < g.V(); v++) {
-				for (DirectedEdge e : g.adj(v)) {
-					int w = e.to();
-					if (distTo[v] + e.weight() < distTo[w]) {
-						System.err.println("edge " + e + " not relaxed");
-						return false;
-					}
+			for (int e = 0; e < g.E(); e++) {
+				int v = g.from(e), w = g.to(e);
+				if (distTo[v] + g.weight(e) < distTo[w]) {
+					System.err.println("edge " + g.edge(e) + " not relaxed");
+					return false;
 				}
 			}
 
 			// check that all edges e = v->w on SPT satisfy distTo[w] ==
 			// distTo[v] + e.weight()
 			for (int w = 0; w < g.V(); w++) {
-				if (edgeTo[w] == null)
+				if (edgeTo[w] == -1)
 					continue;
-				DirectedEdge e = edgeTo[w];
-				int v = e.from();
-				if (w != e.to())
+				int e = edgeTo[w];
+				int v = g.from(e);
+				if (w != g.to(e))
 					return false;
-				if (distTo[v] + e.weight() != distTo[w]) {
-					System.err.println("edge " + e
+				if (distTo[v] + g.weight(e) != distTo[w]) {
+					System.err.println("edge " + g.edge(e)
 							+ " on shortest path not tight");
 					return false;
 				}
@@ -284,11 +613,10 @@ public class ApplyBellmanFord {
 	public ApplyBellmanFord() {
 		
 		toString = "";
-		CreateAuxiliaryGraph G = new CreateAuxiliaryGraph("BellmanFord",theS); 
-		CreateAuxiliaryGraph originG = new CreateAuxiliaryGraph(G); //COPY ABOVE
+		CompactDigraph G = new CompactDigraph();
 		//StdOut.println("@ApplyBellmanFord:Print CreateAuxiliaryGraph" + G);
 		// theGraph = new EdgeWeightedDigraph(G);
-		ApplyBellmanFord sp = new ApplyBellmanFord(G, theS);  
+		Potentials sp = cache == null ? solve(G, theS) : cache.solve(G, theS);
 		//StdOut.println("GRAPH IS "+ originG);
 		// print negative cycle
 		if (sp.hasNegativeCycle()) {
@@ -314,12 +642,11 @@ public class ApplyBellmanFord {
 					}
 				}
 			}			
-			Iterator<DirectedEdge> iterator = originG.edges().iterator();
-			//StdOut.println("@originG is "+originG);
+			// in the order of the former G.edges(): last edge first
 			toString +="New Edge weight\n";
 			toString += (G.V()-1)+" "+(G.E()-G.V()+1)+"\n";
-			while (iterator.hasNext()) {
-				DirectedEdge e = iterator.next();
+			for (int i = G.E() - 1; i >= 0; i--) {
+				DirectedEdge e = G.edge(i);
 				double fromVW = edgeWeight[e.from()];
 				double toVW = edgeWeight[e.to()];
 				/*
@@ -345,10 +672,41 @@ public class ApplyBellmanFord {
 	 * Unit tests the <tt>BellmanFordSP</tt> data type.
 	 */
 	static int theS;
-	public static void main(String[] args) {
+	static String order; // vertex ordering (-order bfs|rcm|degree), or null
+	static String solver = "spfa"; // potential solver (-solver
+									// spfa|scc|goldberg|parallel)
+	// threads of -solver parallel (-threads n)
+	static int threads = Runtime.getRuntime().availableProcessors();
+	static String discipline = "fifo"; // queue order of spfa (-queue ...)
+	static boolean stats; // print the counters of spfa (-stats)
+	static PotentialCache cache; // results of earlier runs (-cache dir)
+	public static void main(String[] args) throws IOException {
 		//StdOut.println("================= This is ApplyBellmanFord ===============");
 		if (PIPELINE) {
 			theS = Integer.parseInt(args[0]);
+			String cacheDir = null;
+			long cacheMB = 256, cacheDays = 30;
+			for (int i = 1; i < args.length; i++) {
+				if (args[i].equals("-order"))
+					order = args[++i];
+				else if (args[i].equals("-solver"))
+					solver = args[++i];
+				else if (args[i].equals("-queue"))
+					discipline = args[++i];
+				else if (args[i].equals("-stats"))
+					stats = true;
+				else if (args[i].equals("-threads"))
+					threads = Integer.parseInt(args[++i]);
+				else if (args[i].equals("-cache"))
+					cacheDir = args[++i];
+				else if (args[i].equals("-cachemb"))
+					cacheMB = Long.parseLong(args[++i]);
+				else if (args[i].equals("-cachedays"))
+					cacheDays = Long.parseLong(args[++i]);
+			}
+			if (cacheDir != null)
+				cache = new PotentialCache(new File(cacheDir),
+						cacheMB << 20, cacheDays * 24 * 3600 * 1000);
 			ApplyBellmanFord AP = new ApplyBellmanFord();
 			
 			StdOut.println(AP);
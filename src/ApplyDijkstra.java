@@ -9,45 +9,78 @@
  * 
  */
 
-public class ApplyDijkstra {
+public class ApplyDijkstra implements ShortestPaths {
 
+	private CompactDigraph g; // the graph searched
 	private double[] distTo; // distTo[v] = distance of shortest s->v path
-	private DirectedEdge[] edgeTo; // edgeTo[v] = last edge on shortest s->v
-									// path
+	private int[] edgeTo; // edgeTo[v] = index of last edge on shortest s->v
+							// path, -1 if none
 	private IndexMinPQ<Double> pq; // priority queue of vertices
+	private int[] scratch; // path buffer of pathTo(v, visitor)
+	private static final String NEWLINE = System.getProperty("line.separator");
 	public static boolean PIPELINE = CreateAuxiliaryGraph.PIPELINE;
 
 	public ApplyDijkstra(CreateAuxiliaryGraph g, int s) {
-		for (DirectedEdge e : g.edges()) {
-			if (e.weight() < 0)
-				throw new IllegalArgumentException("edge " + e
+		this(new CompactDigraph(g), s);
+	}
+
+	// the shortest paths tree found by another search, such as
+	// DeltaSteppingSP
+	ApplyDijkstra(CompactDigraph g, double[] distTo, int[] edgeTo) {
+		this.g = g;
+		this.distTo = distTo;
+		this.edgeTo = edgeTo;
+	}
+
+	public ApplyDijkstra(CompactDigraph g, int s) {
+		for (int e = 0; e < g.E(); e++) {
+			if (g.weight(e) < 0)
+				throw new IllegalArgumentException("edge " + g.edge(e)
 						+ " has negative weight");
 		}
 
+		this.g = g;
 		distTo = new double[g.V()];
-		edgeTo = new DirectedEdge[g.V()];
-		for (int v = 0; v < g.V(); v++)
+		edgeTo = new int[g.V()];
+		for (int v = 0; v < g.V(); v++) {
 			distTo[v] = Double.POSITIVE_INFINITY;
+			edgeTo[v] = -1;
+		}
 		distTo[s] = 0.0;
 
+		// an acyclic graph needs no priority queue, unless two paths tie in a
+		// way only the queue's order decides
+		int[] topological = g.topologicalOrder();
+		if (topological != null) {
+			if (relaxInOrder(topological)) {
+				assert check(s);
+				return;
+			}
+			for (int v = 0; v < g.V(); v++) {
+				distTo[v] = Double.POSITIVE_INFINITY;
+				edgeTo[v] = -1;
+			}
+			distTo[s] = 0.0;
+		}
+
 		// relax vertices in order of distance from s
 		pq = new IndexMinPQ<Double>(g.V());
 		pq.insert(s, distTo[s]);
 		while (!pq.isEmpty()) {
 			int v = pq.delMin();
-			for (DirectedEdge e : g.adj(v))
+			for (int e = g.begin(v); e < g.end(v); e++)
 				relax(e);
 		}
 
 		// check optimality conditions
-		assert check(g, s);
+		assert check(s);
 	}
 
 	// relax edge e and update pq if changed
-	private void relax(DirectedEdge e) {
-		int v = e.from(), w = e.to();
-		if (distTo[w] > distTo[v] + e.weight()) {
-			distTo[w] = distTo[v] + e.weight();
+	private void relax(int e) {
+		int v = g.from(e), w = g.to(e);
+		if (distTo[w] > distTo[v] + g.weight(e)) {
+			distTo[w] = distTo[v] + g.weight(e);
 			edgeTo[w] = e;
 			if (pq.contains(w))
 				pq.decreaseKey(w, distTo[w]);
@@ -56,6 +89,34 @@ public class ApplyDijkstra {
 		}
 	}
 
+	// relax the vertices of an acyclic graph in topological order, which
+	// settles every vertex before its edges are relaxed. Of two equally short
+	// paths Dijkstra keeps the one through the vertex it settled first, the
+	// one closer to s, and so does this; returns false if the two vertices
+	// are equally close, where the tree would depend on the queue
+	private boolean relaxInOrder(int[] topological) {
+		for (int v : topological) {
+			if (distTo[v] == Double.POSITIVE_INFINITY)
+				continue;
+			for (int e = g.begin(v); e < g.end(v); e++) {
+				int w = g.to(e);
+				double d = distTo[v] + g.weight(e);
+				if (distTo[w] > d) {
+					distTo[w] = d;
+					edgeTo[w] = e;
+				} else if (distTo[w] == d && edgeTo[w] != -1
+						&& g.from(edgeTo[w]) != v) {
+					double u = distTo[g.from(edgeTo[w])];
+					if (u == distTo[v])
+						return false;
+					if (u > distTo[v])
+						edgeTo[w] = e;
+				}
+			}
+		}
+		return true;
+	}
+
 	// length of shortest path from s to v
 	public double distTo(int v) {
 		return distTo[v];
@@ -66,40 +127,116 @@ public class ApplyDijkstra {
 		return distTo[v] < Double.POSITIVE_INFINITY;
 	}
 
+	// last edge on the shortest path from s to v, null if none
+	public DirectedEdge edgeTo(int v) {
+		return edgeTo[v] == -1 ? null : g.edge(edgeTo[v]);
+	}
+
+	// index in the graph of the last edge on the shortest path from s to v,
+	// -1 if none
+	public int lastEdge(int v) {
+		return edgeTo[v];
+	}
+
+	// the graph searched
+	public CompactDigraph graph() {
+		return g;
+	}
+
 	// shortest path from s to v as an Iterable, null if no such path
 	public Iterable<DirectedEdge> pathTo(int v) {
 		if (!hasPathTo(v))
 			return null;
 		Stack<DirectedEdge> path = new Stack<DirectedEdge>();
-		for (DirectedEdge e = edgeTo[v]; e != null; e = edgeTo[e.from()]) {
-			path.push(e);
+		for (int e = edgeTo[v]; e != -1; e = edgeTo[g.from(e)]) {
+			path.push(g.edge(e));
 		}
 		return path;
 	}
 
+	// writes the vertices of the shortest path from s to v into path[],
+	// source first, and returns their number; 0 if there is no such path
+	public int pathTo(int v, int[] path) {
+		if (!hasPathTo(v))
+			return 0;
+		int k = 1;
+		for (int e = edgeTo[v]; e != -1; e = edgeTo[g.from(e)])
+			k++;
+		int i = k;
+		path[--i] = v;
+		for (int e = edgeTo[v]; e != -1; e = edgeTo[g.from(e)])
+			path[--i] = g.from(e);
+		return k;
+	}
+
+	// hands the edges of the shortest path from s to v to visitor, source
+	// first; allocates nothing after the first call
+	public void pathTo(int v, PathVisitor visitor) {
+		if (scratch == null)
+			scratch = new int[distTo.length];
+		int k = pathTo(v, scratch);
+		for (int i = 1; i < k; i++) {
+			int e = edgeTo[scratch[i]];
+			visitor.visit(g.from(e), g.to(e), g.weight(e));
+		}
+	}
+
+	// rename the vertices of this shortest paths tree back to the numbering
+	// of the input, when it was computed on VertexOrdering.relabel(G, perm)
+	void unpermute(int[] perm, CompactDigraph G) {
+		double[] dist = new double[distTo.length];
+		int[] edge = new int[edgeTo.length];
+		for (int v = 0; v < distTo.length; v++) {
+			dist[v] = distTo[perm[v]];
+			int e = edgeTo[perm[v]];
+			edge[v] = e == -1 ? -1 : g.origin(e);
+		}
+		distTo = dist;
+		edgeTo = edge;
+		g = G;
+	}
+
+	// shortest paths from s, computed on a renumbered copy of g when a vertex
+	// ordering was requested
+	static ApplyDijkstra solve(CompactDigraph g, int s) {
+		if (order == null)
+			return search(g, s);
+		int[] perm = VertexOrdering.order(g, order, -1);
+		ApplyDijkstra sp = search(VertexOrdering.relabel(g, perm), perm[s]);
+		sp.unpermute(perm, g);
+		return sp;
+	}
+
+	// sequential Dijkstra, or delta-stepping when threads were requested
+	private static ApplyDijkstra search(CompactDigraph g, int s) {
+		if (threads > 0)
+			return new DeltaSteppingSP(g, s, delta, threads).tree();
+		return new ApplyDijkstra(g, s);
+	}
+
 	// check optimality conditions:
 	// (i) for all edges e: distTo[e.to()] <= distTo[e.from()] + e.weight()
 	// (ii) for all edge e on the SPT: distTo[e.to()] == distTo[e.from()] +
 	// e.weight()
-	private boolean check(CreateAuxiliaryGraph g, int s) {
+	private boolean check(int s) {
 
 		// check that edge weights are nonnegative
-		for (DirectedEdge e : g.edges()) {
-			if (e.weight() < 0) {
+		for (int e = 0; e < g.E(); e++) {
+			if (g.weight(e) < 0) {
 				System.err.println("negative edge weight detected");
 				return false;
 			}
 		}
 
 		// check that distTo[v] and edgeTo[v] are consistent
-		if (distTo[s] != 0.0 || edgeTo[s] != null) {
+		if (distTo[s] != 0.0 || edgeTo[s] != -1) {
 			System.err.println("distTo[s] and edgeTo[s] inconsistent");
 			return false;
 		}
 		for (int v = 0; v < g.V(); v++) {
 			if (v == s)
 				continue;
-			if (edgeTo[v] == null && distTo[v] != Double.POSITIVE_INFINITY) {
+			if (edgeTo[v] == -1 && distTo[v] != Double.POSITIVE_INFINITY) {
 				System.err.println("distTo[] and edgeTo[] inconsistent");
 				return false;
 			}
@@ -107,27 +244,26 @@ public class ApplyDijkstra {
 
 		// check that all edges e = v->w satisfy distTo[w] <= distTo[v] +
 		// e.weight()
-		for (int v = 0; v < g.V(); v++) {
-			for (DirectedEdge e : g.adj(v)) {
-				int w = e.to();
-				if (distTo[v] + e.weight() < distTo[w]) {
-					System.err.println("edge " + e + " not relaxed");
-					return false;
-				}
+		for (int e = 0; e < g.E(); e++) {
+			int v = g.from(e), w = g.to(e);
+			if (distTo[v] + g.weight(e) < distTo[w]) {
+				System.err.println("edge " + g.edge(e) + " not relaxed");
+				return false;
 			}
 		}
 
 		// check that all edges e = v->w on SPT satisfy distTo[w] == distTo[v] +
 		// e.weight()
 		for (int w = 0; w < g.V(); w++) {
-			if (edgeTo[w] == null)
+			if (edgeTo[w] == -1)
 				continue;
-			DirectedEdge e = edgeTo[w];
-			int v = e.from();
-			if (w != e.to())
+			int e = edgeTo[w];
+			int v = g.from(e);
+			if (w != g.to(e))
 				return false;
-			if (distTo[v] + e.weight() != distTo[w]) {
-				System.err.println("edge " + e + " on shortest path not tight");
+			if (distTo[v] + g.weight(e) != distTo[w]) {
+				System.err.println("edge " + g.edge(e)
+						+ " on shortest path not tight");
 				return false;
 			}
 		}
@@ -158,6 +294,10 @@ public class ApplyDijkstra {
 
 	static int theS;
 	static double pointWeight[];
+	static String order; // vertex ordering (-order bfs|rcm|degree), or null
+	static int threads; // threads of delta-stepping (-threads n), 0 for none
+	static double delta; // bucket width of delta-stepping (-delta x), 0 for
+							// automatic
 
 	public static void main(String[] args) {
 		//StdOut.println("================= This is ApplyDijkstra ===============");
@@ -167,55 +307,53 @@ public class ApplyDijkstra {
 		}
 
 		// start read graph
-		CreateAuxiliaryGraph G = new CreateAuxiliaryGraph("ApplyDijsktra", 0); // TODO
-																				// READ
-																				// FROM
-																				// STDIN
+		CompactDigraph G = new CompactDigraph();
 		int s = Integer.parseInt(args[0]);
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].equals("-order"))
+				order = args[++i];
+			else if (args[i].equals("-threads"))
+				threads = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-delta"))
+				delta = Double.parseDouble(args[++i]);
+		}
+		if (delta > 0 && threads == 0)
+			threads = Runtime.getRuntime().availableProcessors();
 
 		// compute shortest paths
-		ApplyDijkstra sp = new ApplyDijkstra(G, s);
+		ApplyDijkstra sp = solve(G, s);
 		// StdOut.println("ApplyDijkstra's CreateAuxiliaryGraph is\n"+G);
 		// StdOut.println("ApplyDijkstra's Result:");
 		// print shortest path
 
+		int path[] = new int[G.V()];
 		double totalDistance[] = new double[V];
 		for (int t = 0; t < G.V(); t++) {
-			if (sp.hasPathTo(t)) {
-				for (DirectedEdge e : sp.pathTo(t)) {
-					totalDistance[t] += e.weight() - pointWeight[e.from()]
-							+ pointWeight[e.to()];
-
-				}
+			int k = sp.pathTo(t, path);
+			for (int i = 1; i < k; i++) {
+				int e = sp.lastEdge(path[i]);
+				totalDistance[t] += G.weight(e) - pointWeight[G.from(e)]
+						+ pointWeight[G.to(e)];
 			}
 		}
 
+		PathPrinter printer = new PathPrinter(pointWeight);
+		StringBuilder line = printer.line();
 		for (int t = 0; t < G.V(); t++) {
 			if (sp.hasPathTo(t)) {
-				if(totalDistance[t]<0){
-					StdOut.printf("%d to %d (%.2f)  ", s, t,
-							totalDistance[t]);
-					} else {
-						StdOut.printf("%d to %d ( %.2f)  ", s, t,
-								totalDistance[t]);
-					}
-				if (sp.hasPathTo(t)) {
-					for (DirectedEdge e : sp.pathTo(t)) {
-						StdOut.print(e.from() + "->" + e.to() + " ");
-						double result = e.weight() - pointWeight[e.from()]
-								+ pointWeight[e.to()];
-						if(result <0){
-						StdOut.printf("%.2f\t",result);
-						} else {
-							StdOut.printf(" %.2f\t",result);
-						}
-					}
-				}
-				StdOut.println();
+				line.append(s).append(" to ").append(t);
+				line.append(totalDistance[t] < 0 ? " (" : " ( ");
+				PathPrinter.appendFixed2(line, totalDistance[t]);
+				line.append(")  ");
+				sp.pathTo(t, printer);
+				line.append(NEWLINE);
 			} else {
-				StdOut.printf("%d to %d         no path\n", s, t);
+				line.append(s).append(" to ").append(t)
+						.append("         no path\n");
 			}
+			printer.print();
 		}
+		printer.close();
 	}
 
 }
@@ -1,3 +1,11 @@
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * ApplyDijkstraAllPairs takes the graph G** and finds the shortest path between
@@ -18,9 +26,126 @@ public class ApplyDijkstraAllPairs {
 	}
 
 	public ApplyDijkstraAllPairs(CreateAuxiliaryGraph G) {
+		this(new CompactDigraph(G));
+	}
+
+	public ApplyDijkstraAllPairs(CompactDigraph G) {
 		all = new ApplyDijkstra[G.V()];
 		for (int v = 0; v < G.V(); v++)
-			all[v] = new ApplyDijkstra(G, v);
+			all[v] = search(G, v);
+	}
+
+	private static CompactDigraph renumbered; // graph the copy was made of
+	private static CompactDigraph copy; // renumbered copy, -order only
+	private static int[] perm;
+
+	// shortest paths from s; with -order, G is renumbered once and the copy
+	// is searched from every vertex
+	static ApplyDijkstra search(CompactDigraph G, int s) {
+		if (order == null)
+			return new ApplyDijkstra(G, s);
+		if (renumbered != G) {
+			perm = VertexOrdering.order(G, order, -1);
+			copy = VertexOrdering.relabel(G, perm);
+			renumbered = G;
+		}
+		ApplyDijkstra sp = new ApplyDijkstra(copy, perm[s]);
+		sp.unpermute(perm, G);
+		return sp;
+	}
+
+	private static ReachabilityIndex reach; // reachability of the graph
+											// searched
+	private static GraphSnapshot snapshot; // the graph searched, checked once
+	private static MinPlusAllPairs minPlus; // all pairs of the graph searched,
+											// -engine minplus only
+
+	// the distance matrix of G, computed once
+	static MinPlusAllPairs minPlus(CompactDigraph G) {
+		if (minPlus == null || minPlus.graph() != G)
+			minPlus = new MinPlusAllPairs(G, threads);
+		return minPlus;
+	}
+
+	// shortest paths from s in the scratch space of the calling thread, valid
+	// until its next query; with -order, searched by ApplyDijkstra
+	static ShortestPaths query(CompactDigraph G, int s) {
+		if (order != null)
+			return search(G, s);
+		if (snapshot == null || snapshot.graph() != G)
+			snapshot = new GraphSnapshot(G);
+		return snapshot.shortestPaths(s);
+	}
+
+	/**
+	 * Fills in the shortest paths tree from <tt>s</tt> like tree(), looking
+	 * only at the vertices <tt>s</tt> can reach according to the
+	 * ReachabilityIndex of G, and returns them; the entries of the other
+	 * vertices are left as they were (see unreached()). A source that
+	 * reaches no other vertex is not searched at all. <tt>stack</tt> is
+	 * scratch space for V vertices. The set belongs to the calling thread
+	 * and is valid until its next call.
+	 */
+	static BitSet prunedTree(CompactDigraph G, int s, int[] parent,
+			double[] dist, double[] weight, int[] stack) {
+		if (reach == null || reach.graph() != G)
+			reach = new ReachabilityIndex(G);
+		BitSet targets = reach.targets(s);
+		if (engine.equals("minplus")
+				&& minPlus(G).tree(s, pointWeight, parent, dist, weight))
+			return targets;
+		if (reach.reachesOnlyItself(s)) {
+			parent[s] = -1;
+			dist[s] = 0.0;
+			weight[s] = 0.0;
+			return targets;
+		}
+		tree(query(G, s), parent, dist, weight, targets, stack);
+		return targets;
+	}
+
+	// gives the vertices not in reached no path, as tree() does
+	static void unreached(BitSet reached, int[] parent, double[] dist,
+			double[] weight) {
+		int V = parent.length;
+		for (int t = reached.nextClearBit(0); t < V; t = reached
+				.nextClearBit(t + 1)) {
+			parent[t] = -1;
+			dist[t] = Double.POSITIVE_INFINITY;
+			weight[t] = 0.0;
+		}
+	}
+
+	/**
+	 * Streams all pairs to the result <tt>name</tt> (see
+	 * AllPairsResultWriter): every source is searched, its row is formatted
+	 * as text or encoded as a shortest paths tree (AllPairsTreeFormat) and
+	 * handed to the writer, and nothing of it is kept afterwards, so the
+	 * memory used stays proportional to <em>V</em> + <em>E</em> plus one batch
+	 * of rows.
+	 */
+	public static void writeResult(CompactDigraph G, String name,
+			int format, int batch) throws IOException {
+		int n = G.V();
+		AllPairsResultWriter out = new AllPairsResultWriter(name, n, format,
+				batch);
+		int[] parent = new int[n];
+		double[] dist = new double[n];
+		double[] weight = new double[n];
+		int[] path = new int[n];
+		StringBuilder row = new StringBuilder();
+		for (int s = 0; s < n; s++) {
+			BitSet reached = prunedTree(G, s, parent, dist, weight, path);
+			if (format == AllPairsResultWriter.TREE) {
+				unreached(reached, parent, dist, weight);
+				out.write(s, AllPairsTreeFormat.encode(parent, dist, weight));
+			} else {
+				row.setLength(0);
+				formatRow(row, s, reached, parent, dist, weight, path);
+				out.write(s, row.toString().getBytes("UTF-8"));
+			}
+		}
+		out.close();
 	}
 
 	public Iterable<DirectedEdge> path(int s, int t) {
@@ -54,54 +179,329 @@ public class ApplyDijkstraAllPairs {
 	static int V;
 
 	static double pointWeight[];
+	static String order; // vertex ordering (-order bfs|rcm|degree), or null
+	static String engine = "dijkstra"; // all-pairs engine (-engine
+										// dijkstra|minplus)
+	static int threads = Runtime.getRuntime().availableProcessors(); // -threads
 
-	public static void main(String[] args) {
-		readGraphFromBF();
-		CreateAuxiliaryGraph G = new CreateAuxiliaryGraph(
-				"ApplyDijsktraAllPairs", 0);
-		ApplyDijkstraAllPairs allpairs = new ApplyDijkstraAllPairs(G);
-
-		double totalDistance[][] = new double[V][V];
+	private static final long PROGRESS_INTERVAL = 5000; // ms between reports
+	private static final String NEWLINE = System.getProperty("line.separator");
 
-		for (int s = 0; s < G.V(); s++) {
-			for (int t = 0; t < G.V(); t++) {
-				if (allpairs.path(s, t) != null) {
-					for (DirectedEdge e : allpairs.path(s, t)) {
-						totalDistance[s][t] += e.weight() - pointWeight[e.from()]
-								+ pointWeight[e.to()];
+	/**
+	 * Fills in the shortest paths tree of <tt>sp</tt> with the weights of
+	 * the original graph G: <tt>parent[t]</tt> is the vertex before
+	 * <tt>t</tt> on its path (-1 for the source and unreachable vertices),
+	 * <tt>weight[t]</tt> the original weight of the edge into <tt>t</tt> and
+	 * <tt>dist[t]</tt> the length of the path, summed from the source on
+	 * (infinite if there is none).
+	 */
+	static void tree(ShortestPaths sp, int V, int[] parent, double[] dist,
+			double[] weight) {
+		BitSet all = new BitSet(V);
+		all.set(0, V);
+		tree(sp, parent, dist, weight, all, new int[V]);
+	}
 
-					}
+	// the same for the vertices in targets, which must hold every vertex s
+	// reaches; the entries of the others are not touched. stack is scratch
+	// space for V vertices
+	static void tree(ShortestPaths sp, int[] parent, double[] dist,
+			double[] weight, BitSet targets, int[] stack) {
+		CompactDigraph g = sp.graph();
+		for (int t = targets.nextSetBit(0); t >= 0; t = targets
+				.nextSetBit(t + 1)) {
+			parent[t] = -1;
+			dist[t] = Double.NaN;
+			weight[t] = 0.0;
+		}
+		for (int t = targets.nextSetBit(0); t >= 0; t = targets
+				.nextSetBit(t + 1)) {
+			// climb to a vertex whose length is known, then sum back down
+			int k = 0, v = t;
+			while (Double.isNaN(dist[v])) {
+				int e = sp.lastEdge(v);
+				if (e == -1) {
+					dist[v] = sp.hasPathTo(v) ? 0.0 : Double.POSITIVE_INFINITY;
+					weight[v] = 0.0;
+					break;
 				}
+				stack[k++] = v;
+				v = g.from(e);
 			}
+			while (k > 0) {
+				v = stack[--k];
+				int e = sp.lastEdge(v);
+				parent[v] = g.from(e);
+				weight[v] = g.weight(e) - pointWeight[g.from(e)]
+						+ pointWeight[g.to(e)];
+				dist[v] = dist[g.from(e)] + weight[v];
+			}
+		}
+	}
+
+	// the lines printed for source s, rendered from its shortest paths tree;
+	// path is scratch space for V vertices
+	static String formatRow(int s, int[] parent, double[] dist,
+			double[] weight, int[] path) {
+		StringBuilder out = new StringBuilder();
+		formatRow(out, s, parent, dist, weight, path);
+		return out.toString();
+	}
+
+	// the same, appended to out without creating objects per target or edge
+	static void formatRow(StringBuilder out, int s, int[] parent,
+			double[] dist, double[] weight, int[] path) {
+		for (int t = 0; t < parent.length; t++) {
+			if (dist[t] < Double.POSITIVE_INFINITY)
+				formatPath(out, s, t, parent, dist, weight, path);
+			else
+				noPath(out, s, t, t + 1);
+		}
+		out.append(NEWLINE);
+	}
+
+	// the same for a row of prunedTree(), which only filled in the vertices
+	// in reached: the runs of targets between them get no path in one go
+	static void formatRow(StringBuilder out, int s, BitSet reached,
+			int[] parent, double[] dist, double[] weight, int[] path) {
+		int t = 0;
+		for (int r = reached.nextSetBit(0); r >= 0; r = reached
+				.nextSetBit(r + 1)) {
+			noPath(out, s, t, r);
+			formatPath(out, s, r, parent, dist, weight, path);
+			t = r + 1;
 		}
-		for (int s = 0; s < G.V(); s++) {
-			for (int t = 0; t < G.V(); t++) {
-				if (allpairs.path(s, t) != null) {
-					if(totalDistance[s][t]<0){
-					StdOut.printf("%d to %d (%.2f)  ", s, t,
-							totalDistance[s][t]);
-					} else {
-						StdOut.printf("%d to %d ( %.2f)  ", s, t,
-								totalDistance[s][t]);
+		noPath(out, s, t, parent.length);
+		out.append(NEWLINE);
+	}
+
+	// the line of target t: its distance, then the edges of its path
+	private static void formatPath(StringBuilder out, int s, int t,
+			int[] parent, double[] dist, double[] weight, int[] path) {
+		out.append(s).append(" to ").append(t);
+		out.append(dist[t] < 0 ? " (" : " ( ");
+		PathPrinter.appendFixed2(out, dist[t]);
+		out.append(")  ");
+		int k = 0;
+		for (int v = t; parent[v] != -1; v = parent[v])
+			path[k++] = v;
+		while (k > 0) {
+			int v = path[--k];
+			out.append(parent[v]).append("->").append(v).append(' ');
+			PathPrinter.appendWeight(out, weight[v]);
+		}
+		out.append(NEWLINE);
+	}
+
+	// the lines of the targets from..to-1, none of which s reaches
+	private static void noPath(StringBuilder out, int s, int from, int to) {
+		for (int t = from; t < to; t++)
+			out.append(s).append(" to ").append(t).append("\tno path\n");
+	}
+
+	static float[] toFloat(double[] a) {
+		float[] b = new float[a.length];
+		for (int i = 0; i < a.length; i++)
+			b[i] = (float) a[i];
+		return b;
+	}
+
+	// edges of the shortest path to t of sp, stored in path[0..k) from the
+	// source to t; returns k
+	static int pathEdges(FloatDigraph G, FloatDijkstra sp, int t, int[] path) {
+		int k = 0;
+		for (int e = sp.edgeTo(t); e != -1; e = sp.edgeTo(G.from(e)))
+			k++;
+		int i = k;
+		for (int e = sp.edgeTo(t); e != -1; e = sp.edgeTo(G.from(e)))
+			path[--i] = e;
+		return k;
+	}
+
+	/**
+	 * All pairs with single-precision storage: the edge and vertex weights
+	 * are floats. Like the double-precision run it searches one source at a
+	 * time and prints its row before the next, so nothing but the graph and
+	 * one search is kept. Every path length is still summed in double and
+	 * rounded once to a float.
+	 */
+	public static void printSinglePrecision(FloatDigraph G, float[] pw) {
+		int n = G.V();
+		int path[] = new int[n];
+		PathPrinter printer = new PathPrinter(null);
+		StringBuilder line = printer.line();
+		for (int s = 0; s < n; s++) {
+			FloatDijkstra sp = new FloatDijkstra(G, s);
+			for (int t = 0; t < n; t++) {
+				if (sp.hasPathTo(t)) {
+					int k = pathEdges(G, sp, t, path);
+					double sum = 0.0;
+					for (int i = 0; i < k; i++) {
+						int e = path[i];
+						sum += (double) G.weight(e) - pw[G.from(e)]
+								+ pw[G.to(e)];
 					}
-					if (allpairs.path(s, t) != null) {
-						for (DirectedEdge e : allpairs.path(s, t)) {
-							StdOut.print(e.from() + "->" + e.to() + " ");
-							double result = e.weight() - pointWeight[e.from()]
-									+ pointWeight[e.to()];
-							if(result <0){
-								StdOut.printf("%.2f\t",result);
-								} else {
-									StdOut.printf(" %.2f\t",result);
-								}
-						}
+					double dist = (float) sum;
+					line.append(s).append(" to ").append(t);
+					line.append(dist < 0 ? " (" : " ( ");
+					PathPrinter.appendFixed2(line, dist);
+					line.append(")  ");
+					for (int i = 0; i < k; i++) {
+						int e = path[i];
+						line.append(G.from(e)).append("->").append(G.to(e))
+								.append(' ');
+						PathPrinter.appendWeight(line, (double) G.weight(e)
+								- pw[G.from(e)] + pw[G.to(e)]);
 					}
-					StdOut.println();
+					line.append(NEWLINE);
 				} else {
-					StdOut.printf("%d to %d\tno path\n", s, t);
+					line.append(s).append(" to ").append(t)
+							.append("\tno path\n");
 				}
+				printer.print();
 			}
-			StdOut.println();
+			line.append(NEWLINE);
+		}
+		printer.close();
+	}
+
+	public static void main(String[] args) throws IOException {
+		boolean single = false, resume = false, progress = false;
+		boolean pipeline = false; // -threads given: overlap the stages
+		int workers = 0, shard = 0, batch = 64;
+		String result = null, checkpoint = null, file = null;
+		int format = AllPairsResultWriter.TEXT;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-float"))
+				single = true;
+			else if (args[i].equals("-order"))
+				order = args[++i];
+			else if (args[i].equals("-workers"))
+				workers = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-shard"))
+				shard = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-out"))
+				result = args[++i];
+			else if (args[i].equals("-batch"))
+				batch = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-engine"))
+				engine = args[++i];
+			else if (args[i].equals("-threads")) {
+				threads = Integer.parseInt(args[++i]);
+				pipeline = true;
+			}
+			else if (args[i].equals("-checkpoint"))
+				checkpoint = args[++i];
+			else if (args[i].equals("-resume"))
+				resume = true;
+			else if (args[i].equals("-file"))
+				file = args[++i];
+			else if (args[i].equals("-progress"))
+				progress = true;
+			else if (args[i].equals("-format")) {
+				String kind = args[++i];
+				if (kind.equals("tree"))
+					format = AllPairsResultWriter.TREE;
+				else if (kind.equals("text"))
+					format = AllPairsResultWriter.TEXT;
+				else
+					throw new IllegalArgumentException("unknown format "
+							+ kind + " (use text or tree)");
+			}
+		}
+		if (!engine.equals("dijkstra") && !engine.equals("minplus"))
+			throw new IllegalArgumentException("unknown engine " + engine
+					+ " (use dijkstra or minplus)");
+		if (workers > 0) {
+			String other = result != null ? "-out" : file != null ? "-file"
+					: checkpoint != null ? "-checkpoint" : resume ? "-resume"
+							: single ? "-float" : pipeline ? "-threads"
+									: progress ? "-progress" : null;
+			if (other != null)
+				throw new IllegalArgumentException("-workers prints the rows "
+						+ "itself and cannot be combined with " + other);
+			List<String> options = new ArrayList<String>();
+			Collections.addAll(options, "-engine", engine);
+			if (order != null)
+				Collections.addAll(options, "-order", order);
+			new AllPairsCoordinator(workers, shard, options).run();
+			return;
+		}
+		if (resume && checkpoint == null)
+			throw new IllegalArgumentException("-resume needs -checkpoint dir");
+		if (single && checkpoint != null)
+			throw new IllegalArgumentException(
+					"-checkpoint cannot be combined with -float");
+		if (checkpoint != null)
+			AllPairsCheckpoint.openInput(new File(checkpoint), resume);
+		readGraphFromBF();
+		if (single) {
+			float[] pw = toFloat(pointWeight);
+			pointWeight = null;
+			printSinglePrecision(new FloatDigraph(new CompactDigraph()), pw);
+			return;
+		}
+		CompactDigraph G = new CompactDigraph();
+		if (engine.equals("minplus") && minPlus(G).hasNegativeCycle()) {
+			for (DirectedEdge e : minPlus(G).negativeCycle())
+				StdOut.println(e);
+			return;
+		}
+		if (result != null) {
+			writeResult(G, result, format, batch);
+			return;
+		}
+		Progress meter = progress || checkpoint != null ? new Progress(G.V(),
+				PROGRESS_INTERVAL) : null;
+		if (checkpoint != null) {
+			AllPairsCheckpoint cp = new AllPairsCheckpoint(new File(
+					checkpoint), G.V(), batch, resume);
+			if (!cp.run(G, meter)) {
+				System.err.println("stopped; rerun with -checkpoint "
+						+ checkpoint + " -resume to go on");
+				return;
+			}
+			meter.finish();
+			cp.copyTo(System.out);
+			return;
+		}
+		if (pipeline && threads > 1 || file != null) {
+			// searches, formatting and writing overlap; see AllPairsPipeline
+			FileOutputStream out = file == null ? new FileOutputStream(
+					FileDescriptor.out) : new FileOutputStream(file);
+			try {
+				new AllPairsPipeline(G, threads).run(out.getChannel(), meter);
+			} catch (IOException e) {
+				// standard output closed early, as by | head: stop quietly,
+				// as StdOut does
+				if (file != null)
+					throw e;
+				return;
+			} finally {
+				if (file != null)
+					out.close();
+			}
+			if (meter != null)
+				meter.finish();
+			return;
+		}
+		// one source at a time, only over the vertices it reaches; no row is
+		// kept once it is printed
+		int n = G.V();
+		int[] parent = new int[n];
+		double[] dist = new double[n];
+		double[] weight = new double[n];
+		int[] path = new int[n];
+		PathPrinter printer = new PathPrinter(pointWeight);
+		for (int s = 0; s < n; s++) {
+			BitSet reached = prunedTree(G, s, parent, dist, weight, path);
+			formatRow(printer.line(), s, reached, parent, dist, weight, path);
+			printer.print();
+			if (meter != null)
+				meter.done();
 		}
+		printer.close();
+		if (meter != null)
+			meter.finish();
 	}
 }
@@ -0,0 +1,149 @@
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BatchQueries answers a file of <tt>s t</tt> queries against one graph in
+ * one run instead of one pipeline per query. The queries are grouped by
+ * source with a counting sort, and every group is answered by a single
+ * search from its source that stops at the last of its targets to be
+ * settled (ManyToMany.row()). The groups are taken one after the other by
+ * <tt>threads</tt> threads, so a source with many queries does not hold up
+ * the others, and the answers are written in the order of the queries, one
+ * line each in the format of ApplyDijkstraAllPairs without the path.
+ *
+ * java BatchQueries queries results [-threads n] &lt; output of
+ * ApplyBellmanFord
+ *
+ * @author SephyZhou
+ *
+ */
+public class BatchQueries {
+	private final ManyToMany engine;
+	private final int V;
+
+	public BatchQueries(CompactDigraph g, double[] pointWeight) {
+		engine = new ManyToMany(g, pointWeight);
+		V = g.V();
+	}
+
+	/**
+	 * Returns the distance of every query <tt>source[i] -&gt; target[i]</tt>
+	 * in the original weights, infinite if there is no path.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 *             if an id is not a vertex
+	 */
+	public double[] answer(int[] source, int[] target, int threads) {
+		final int n = source.length;
+		for (int i = 0; i < n; i++) {
+			if (source[i] < 0 || source[i] >= V || target[i] < 0
+					|| target[i] >= V)
+				throw new IndexOutOfBoundsException("query " + source[i]
+						+ " " + target[i] + " is not between 0 and "
+						+ (V - 1));
+		}
+
+		// group by source: the targets of source s are
+		// grouped[first[s] .. first[s+1]-1], query[] maps them back
+		final int[] first = new int[V + 1];
+		for (int i = 0; i < n; i++)
+			first[source[i] + 1]++;
+		for (int s = 0; s < V; s++)
+			first[s + 1] += first[s];
+		final int[] grouped = new int[n];
+		final int[] query = new int[n];
+		int[] next = new int[V];
+		for (int s = 0; s < V; s++)
+			next[s] = first[s];
+		for (int i = 0; i < n; i++) {
+			int k = next[source[i]]++;
+			grouped[k] = target[i];
+			query[k] = i;
+		}
+
+		final double[] found = new double[n]; // in grouped order
+		final AtomicInteger sources = new AtomicInteger();
+		threads = Math.max(1, threads);
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int k = 0; k < threads; k++) {
+			tasks.add(new Callable<Void>() {
+				public Void call() {
+					for (int s; (s = sources.getAndIncrement()) < V;)
+						if (first[s] < first[s + 1])
+							engine.row(s, grouped, first[s], first[s + 1],
+									found, first[s]);
+					return null;
+				}
+			});
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			for (Future<Void> f : pool.invokeAll(tasks))
+				f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("batch interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+
+		double[] dist = new double[n];
+		for (int k = 0; k < n; k++)
+			dist[query[k]] = found[k];
+		return dist;
+	}
+
+	public static void main(String[] args) throws IOException {
+		int threads = Runtime.getRuntime().availableProcessors();
+		for (int i = 2; i < args.length; i++)
+			if (args[i].equals("-threads"))
+				threads = Integer.parseInt(args[++i]);
+		In in = new In(args[0]);
+		int[] ids = in.readAllInts();
+		in.close();
+		if (ids.length % 2 != 0)
+			throw new IllegalArgumentException(args[0]
+					+ " does not hold pairs of vertices");
+		int n = ids.length / 2;
+		int[] source = new int[n];
+		int[] target = new int[n];
+		for (int i = 0; i < n; i++) {
+			source[i] = ids[2 * i];
+			target[i] = ids[2 * i + 1];
+		}
+		ids = null;
+
+		ApplyDijkstraAllPairs.readGraphFromBF();
+		CompactDigraph G = new CompactDigraph();
+		double[] dist = new BatchQueries(G, ApplyDijkstraAllPairs.pointWeight)
+				.answer(source, target, threads);
+
+		Writer out = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(args[1]), "UTF-8"), 1 << 16);
+		Formatter f = new Formatter(out, Locale.US);
+		for (int i = 0; i < n; i++) {
+			if (dist[i] == Double.POSITIVE_INFINITY)
+				f.format("%d to %d\tno path%n", source[i], target[i]);
+			else if (dist[i] < 0)
+				f.format("%d to %d (%.2f)%n", source[i], target[i], dist[i]);
+			else
+				f.format("%d to %d ( %.2f)%n", source[i], target[i], dist[i]);
+		}
+		f.close();
+	}
+}
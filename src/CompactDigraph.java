@@ -0,0 +1,264 @@
+/**
+ * CompactDigraph is the read-only graph the shortest path algorithms run on.
+ * Instead of one <tt>DirectedEdge</tt> object per edge it keeps the edges in
+ * parallel arrays (struct of arrays) grouped by source vertex, so a relaxation
+ * reads the tail, head and weight of an edge from three flat arrays and an
+ * edge is identified by its index. <tt>DirectedEdge</tt> objects are only
+ * made by <tt>edge(e)</tt>, when a caller asks for one. The edges leaving a
+ * vertex are kept in the order the <tt>Bag</tt> of CreateAuxiliaryGraph
+ * returns them, so the algorithms visit them in the same order as before.
+ *
+ * @author SephyZhou
+ *
+ */
+public class CompactDigraph {
+	private final int V;
+	private final int E;
+	private final int[] first; // edges first[v] .. first[v+1]-1 leave v
+	private final int[] from; // from[e] = tail of edge e
+	private final int[] to; // to[e] = head of edge e
+	private final double[] weight; // weight[e] = weight of edge e
+	private final int[] origin; // origin[e] = index of e in the graph this
+								// one was renumbered from, null if none
+	private int[] topological; // vertices in topological order, null if
+								// not known yet or the graph has a cycle
+	private volatile boolean sorted; // has topological order been looked
+										// for? set after topological
+	private long fingerprint; // hash of the graph, 0 if not computed yet
+
+	/**
+	 * Reads the graph from standard input in the format printed by
+	 * CreateAuxiliaryGraph: the number of vertices <em>V</em>, the number of
+	 * edges <em>E</em>, followed by <em>E</em> triples <tt>v w weight</tt>.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the number of vertices or edges is negative
+	 * @throws IndexOutOfBoundsException
+	 *             if the endpoints of any edge are not in prescribed range
+	 */
+	public CompactDigraph() {
+		V = StdIn.readInt();
+		if (V < 0)
+			throw new IllegalArgumentException(
+					"Number of vertices in a Digraph must be nonnegative");
+		E = StdIn.readInt();
+		if (E < 0)
+			throw new IllegalArgumentException(
+					"Number of edges must be nonnegative");
+		int[] v = new int[E];
+		int[] w = new int[E];
+		double[] x = new double[E];
+		for (int i = 0; i < E; i++) {
+			v[i] = StdIn.readInt();
+			w[i] = StdIn.readInt();
+			if (v[i] < 0 || v[i] >= V)
+				throw new IndexOutOfBoundsException("vertex " + v[i]
+						+ " is not between 0 and " + (V - 1));
+			if (w[i] < 0 || w[i] >= V)
+				throw new IndexOutOfBoundsException("vertex " + w[i]
+						+ " is not between 0 and " + (V - 1));
+			x[i] = StdIn.readDouble();
+		}
+		first = new int[V + 1];
+		from = new int[E];
+		to = new int[E];
+		weight = new double[E];
+		origin = null;
+
+		// group the edges by tail; a Bag hands back the edges of a vertex in
+		// reverse order of insertion, so fill every group from its end
+		for (int i = 0; i < E; i++)
+			first[v[i] + 1]++;
+		for (int u = 0; u < V; u++)
+			first[u + 1] += first[u];
+		int[] next = new int[V];
+		for (int u = 0; u < V; u++)
+			next[u] = first[u + 1];
+		for (int i = 0; i < E; i++) {
+			int e = --next[v[i]];
+			from[e] = v[i];
+			to[e] = w[i];
+			weight[e] = x[i];
+		}
+	}
+
+	/**
+	 * Initializes a compact copy of <tt>G</tt>.
+	 *
+	 * @param G
+	 *            the edge-weighted digraph to copy
+	 */
+	public CompactDigraph(CreateAuxiliaryGraph G) {
+		V = G.V();
+		E = G.E();
+		first = new int[V + 1];
+		from = new int[E];
+		to = new int[E];
+		weight = new double[E];
+		origin = null;
+		int e = 0;
+		for (int v = 0; v < V; v++) {
+			first[v] = e;
+			for (DirectedEdge d : G.adj(v)) {
+				from[e] = d.from();
+				to[e] = d.to();
+				weight[e] = d.weight();
+				e++;
+			}
+		}
+		first[V] = e;
+	}
+
+	// a graph made of the given arrays, whose edges are the first first[V]
+	// entries of from, to, weight and origin
+	CompactDigraph(int[] first, int[] from, int[] to, double[] weight,
+			int[] origin) {
+		this.V = first.length - 1;
+		this.E = first[V];
+		this.first = first;
+		this.from = from;
+		this.to = to;
+		this.weight = weight;
+		this.origin = origin;
+	}
+
+	// number of vertices
+	public int V() {
+		return V;
+	}
+
+	// number of edges
+	public int E() {
+		return E;
+	}
+
+	// index of the first edge leaving v
+	public int begin(int v) {
+		return first[v];
+	}
+
+	// one past the index of the last edge leaving v
+	public int end(int v) {
+		return first[v + 1];
+	}
+
+	// number of edges leaving v
+	public int outdegree(int v) {
+		return first[v + 1] - first[v];
+	}
+
+	// tail of edge e
+	public int from(int e) {
+		return from[e];
+	}
+
+	// head of edge e
+	public int to(int e) {
+		return to[e];
+	}
+
+	// weight of edge e
+	public double weight(int e) {
+		return weight[e];
+	}
+
+	// index of edge e in the graph this one was renumbered from
+	public int origin(int e) {
+		return origin == null ? e : origin[e];
+	}
+
+	// edge e as an object
+	public DirectedEdge edge(int e) {
+		return new DirectedEdge(from[e], to[e], weight[e]);
+	}
+
+	/**
+	 * Returns the graph with every edge turned around, grouped by its new
+	 * tail in the order of the edge indices; <tt>origin(e)</tt> of the
+	 * reverse is the index of the edge in this graph.
+	 */
+	public CompactDigraph reverse() {
+		int[] rfirst = new int[V + 1];
+		int[] rfrom = new int[E];
+		int[] rto = new int[E];
+		double[] rweight = new double[E];
+		int[] rorigin = new int[E];
+		for (int e = 0; e < E; e++)
+			rfirst[to[e] + 1]++;
+		for (int v = 0; v < V; v++)
+			rfirst[v + 1] += rfirst[v];
+		int[] next = new int[V];
+		for (int v = 0; v < V; v++)
+			next[v] = rfirst[v];
+		for (int e = 0; e < E; e++) {
+			int r = next[to[e]]++;
+			rfrom[r] = to[e];
+			rto[r] = from[e];
+			rweight[r] = weight[e];
+			rorigin[r] = e;
+		}
+		return new CompactDigraph(rfirst, rfrom, rto, rweight, rorigin);
+	}
+
+	/**
+	 * Returns a 64-bit hash of <em>V</em>, <em>E</em> and the triples
+	 * <tt>v w weight</tt> of the edges in order of their index, computed in
+	 * one pass over the arrays the first time it is asked for. Graphs read
+	 * from the same input have the same fingerprint; a change to any edge
+	 * changes it with near certainty.
+	 */
+	public long fingerprint() {
+		if (fingerprint != 0)
+			return fingerprint;
+		long h = mix(mix(0x4A6F686E736F6E21L, V), E);
+		for (int e = 0; e < E; e++)
+			h = mix(mix(mix(h, from[e]), to[e]),
+					Double.doubleToLongBits(weight[e]));
+		// final avalanche of splitmix64
+		h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+		h ^= h >>> 31;
+		fingerprint = h == 0 ? 1 : h;
+		return fingerprint;
+	}
+
+	private static long mix(long h, long x) {
+		return Long.rotateLeft(h ^ x * 0x9E3779B97F4A7C15L, 27)
+				* 0xC2B2AE3D27D4EB4FL;
+	}
+
+	// is the graph acyclic?
+	public boolean isAcyclic() {
+		return topologicalOrder() != null;
+	}
+
+	/**
+	 * Returns the vertices in topological order (every edge goes from an
+	 * earlier to a later vertex), or null if the graph has a cycle. The order
+	 * is found once, in time proportional to <em>V</em> + <em>E</em>, and
+	 * kept for later calls; threads that ask at the same time may each find
+	 * it, but none sees it before it is complete.
+	 */
+	public int[] topologicalOrder() {
+		if (sorted)
+			return topological;
+		int[] indegree = new int[V];
+		for (int e = 0; e < E; e++)
+			indegree[to[e]]++;
+		int[] order = new int[V];
+		int n = 0;
+		for (int v = 0; v < V; v++)
+			if (indegree[v] == 0)
+				order[n++] = v;
+		for (int head = 0; head < n; head++) {
+			int v = order[head];
+			for (int e = first[v]; e < first[v + 1]; e++)
+				if (--indegree[to[e]] == 0)
+					order[n++] = to[e];
+		}
+		int[] found = n == V ? order : null;
+		topological = found;
+		sorted = true; // a volatile write, so topological is seen with it
+		return found;
+	}
+}
@@ -0,0 +1,112 @@
+/**
+ * CompactSCC finds the strongly connected components of a CompactDigraph with
+ * Tarjan's algorithm. The depth-first search keeps its own stack of vertices
+ * and edge positions instead of recursing, so it works on graphs of any
+ * depth. The components are numbered in topological order of the
+ * condensation: every edge between two components goes from a lower to a
+ * higher number.
+ *
+ * @author SephyZhou
+ *
+ */
+public class CompactSCC {
+	private final int[] id; // id[v] = component of v
+	private final int count; // number of components
+	private final int[] first; // members first[c] .. first[c+1]-1 ...
+	private final int[] members; // ... of component c
+
+	public CompactSCC(CompactDigraph g) {
+		int V = g.V();
+		id = new int[V];
+		int[] index = new int[V]; // preorder number + 1, 0 if unvisited
+		int[] low = new int[V];
+		boolean[] onStack = new boolean[V];
+		int[] stack = new int[V]; // vertices of open components
+		int[] frame = new int[V]; // depth-first search path ...
+		int[] next = new int[V]; // ... and next edge of every vertex on it
+		int sp = 0, depth = 0, pre = 0, c = 0;
+
+		for (int r = 0; r < V; r++) {
+			if (index[r] != 0)
+				continue;
+			index[r] = low[r] = ++pre;
+			stack[sp++] = r;
+			onStack[r] = true;
+			frame[depth] = r;
+			next[depth++] = g.begin(r);
+			while (depth > 0) {
+				int v = frame[depth - 1];
+				if (next[depth - 1] < g.end(v)) {
+					int w = g.to(next[depth - 1]++);
+					if (index[w] == 0) {
+						index[w] = low[w] = ++pre;
+						stack[sp++] = w;
+						onStack[w] = true;
+						frame[depth] = w;
+						next[depth++] = g.begin(w);
+					} else if (onStack[w] && index[w] < low[v]) {
+						low[v] = index[w];
+					}
+					continue;
+				}
+				depth--;
+				if (depth > 0) {
+					int u = frame[depth - 1];
+					if (low[v] < low[u])
+						low[u] = low[v];
+				}
+				if (low[v] == index[v]) {
+					int w;
+					do {
+						w = stack[--sp];
+						onStack[w] = false;
+						id[w] = c;
+					} while (w != v);
+					c++;
+				}
+			}
+		}
+		count = c;
+
+		// Tarjan completes sink components first; reverse to get
+		// topological order, then group the members by component
+		first = new int[count + 1];
+		for (int v = 0; v < V; v++) {
+			id[v] = count - 1 - id[v];
+			first[id[v] + 1]++;
+		}
+		for (int k = 0; k < count; k++)
+			first[k + 1] += first[k];
+		int[] fill = new int[count];
+		for (int k = 0; k < count; k++)
+			fill[k] = first[k];
+		members = new int[V];
+		for (int v = 0; v < V; v++)
+			members[fill[id[v]]++] = v;
+	}
+
+	// number of strongly connected components
+	public int count() {
+		return count;
+	}
+
+	// component of v
+	public int id(int v) {
+		return id[v];
+	}
+
+	// are v and w strongly connected?
+	public boolean stronglyConnected(int v, int w) {
+		return id[v] == id[w];
+	}
+
+	// number of vertices in component c
+	public int size(int c) {
+		return first[c + 1] - first[c];
+	}
+
+	// the i-th vertex of component c, 0 <= i < size(c)
+	public int member(int c, int i) {
+		return members[first[c] + i];
+	}
+}
@@ -29,6 +29,14 @@ public class CreateAuxiliaryGraph {
 		
 		if(PIPELINE){
 			CreateAuxiliaryGraph G = new CreateAuxiliaryGraph();
+			if (args.length > 0 && args[0].equals("-dedup")) {
+				int edges = G.E();
+				DirectedEdge loop = G.compact();
+				System.err.println("removed " + (edges - G.E())
+						+ " parallel edges and self-loops");
+				if (loop != null)
+					System.err.println("negative cycle: " + loop);
+			}
 			StdOut.println(G);
 		} else {
 		}
@@ -39,6 +47,8 @@ public class CreateAuxiliaryGraph {
     private final int V;
     private int E;
     private Bag<DirectedEdge>[] adj;
+    private int[] topological; // vertices in topological order, null if there is a cycle
+    private boolean sorted; // is topological up to date?
     
     /**
      * Initializes an empty edge-weighted digraph with <tt>V</tt> vertices and 0 edges.
@@ -154,6 +164,45 @@ public class CreateAuxiliaryGraph {
         }
 	}
 
+    /**
+     * Keeps only the lightest of the edges from <tt>v</tt> to <tt>w</tt>,
+     * for every pair, and drops the self-loops whose weight is not negative:
+     * neither can be on a shortest path, but both are relaxed by every search.
+     * A negative self-loop is a negative cycle on its own; it is kept, so the
+     * shortest path algorithms find it as before, and the first one is
+     * returned at once. The edges left keep their order.
+     * This method takes time proportional to <em>E</em> + <em>V</em>.
+     * @return a negative self-loop, or <tt>null</tt> if there is none
+     */
+    public DirectedEdge compact() {
+        DirectedEdge negative = null;
+        int[] seen = new int[V]; // seen[w] = v+1 once v->w is kept
+        int[] slot = new int[V]; // where v->w is in kept
+        DirectedEdge[] kept = new DirectedEdge[V]; // edges of v left
+        E = 0;
+        for (int v = 0; v < V; v++) {
+            int n = 0;
+            for (DirectedEdge e : adj[v]) {
+                int w = e.to();
+                if (w == v && e.weight() >= 0) continue;
+                if (w == v && negative == null) negative = e;
+                if (seen[w] != v + 1) {
+                    seen[w] = v + 1;
+                    slot[w] = n;
+                    kept[n++] = e;
+                }
+                else if (e.weight() < kept[slot[w]].weight()) kept[slot[w]] = e;
+            }
+            // a Bag hands its edges back last added first
+            adj[v] = new Bag<DirectedEdge>();
+            for (int i = n - 1; i >= 0; i--)
+                adj[v].add(kept[i]);
+            E += n;
+        }
+        sorted = false;
+        return negative;
+    }
+
 	/**
      * Returns the number of vertices in the edge-weighted digraph.
      * @return the number of vertices in the edge-weighted digraph
@@ -178,6 +227,7 @@ public class CreateAuxiliaryGraph {
         int v = e.from();
         adj[v].add(e);
         E++;
+        sorted = false;
     }
 
 
@@ -208,6 +258,41 @@ public class CreateAuxiliaryGraph {
         return list;
     } 
 
+    /**
+     * Is the graph acyclic? This is found the first time it is asked; G* is
+     * acyclic exactly when G is, since s has no incoming edges. The shortest
+     * path algorithms then relax the vertices in topological order instead of
+     * running Bellman-Ford or Dijkstra.
+     * @return <tt>true</tt> if the graph has no directed cycle
+     */
+    public boolean isAcyclic() {
+        return topologicalOrder() != null;
+    }
+
+    /**
+     * Returns the vertices in topological order, or <tt>null</tt> if the graph
+     * has a directed cycle. The order is found once, in time proportional to
+     * <em>E</em> + <em>V</em>, and kept until an edge is added.
+     * @return the vertices with every edge going from an earlier to a later one
+     */
+    public int[] topologicalOrder() {
+        if (sorted) return topological;
+        int[] indegree = new int[V];
+        for (int v = 0; v < V; v++)
+            for (DirectedEdge e : adj[v])
+                indegree[e.to()]++;
+        int[] order = new int[V];
+        int n = 0;
+        for (int v = 0; v < V; v++)
+            if (indegree[v] == 0) order[n++] = v;
+        for (int head = 0; head < n; head++)
+            for (DirectedEdge e : adj[order[head]])
+                if (--indegree[e.to()] == 0) order[n++] = e.to();
+        topological = n == V ? order : null;
+        sorted = true;
+        return topological;
+    }
+
     /**
      * Returns the number of directed edges incident from vertex <tt>v</tt>.
      * This is known as the <em>outdegree</em> of vertex <tt>v</tt>.
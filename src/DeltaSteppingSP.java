@@ -0,0 +1,274 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * DeltaSteppingSP finds the shortest paths from one vertex of the reweighted
+ * graph G** with Meyer and Sanders' delta-stepping, relaxing the edges of
+ * many vertices at once on several threads (<tt>java ApplyDijkstra s
+ * -threads n [-delta x]</tt>).
+ * <p>
+ * The vertices wait in buckets of width <tt>delta</tt> by tentative
+ * distance. The lowest bucket is emptied in rounds: the light edges (weight
+ * at most <tt>delta</tt>) of all its vertices are relaxed in parallel, which
+ * may put vertices back into it, until it stays empty; then the heavy edges
+ * of every vertex that passed through it are relaxed once, also in parallel.
+ * The distances are doubles kept as their bits in an
+ * <tt>AtomicLongArray</tt>; since they are never negative, their bits order
+ * as longs the same way, and a distance is lowered by compare-and-set without
+ * locks.
+ * <p>
+ * The distances come out as the same doubles as those of ApplyDijkstra. The
+ * shortest paths tree is then rebuilt to match ApplyDijkstra as well: of the
+ * tight edges into a vertex the one from the vertex closest to s is kept,
+ * which is the vertex Dijkstra settles first. If two such vertices are
+ * equally close, only the order of Dijkstra's queue decides, and the search
+ * is repeated by ApplyDijkstra.
+ *
+ * @author SephyZhou
+ *
+ */
+public class DeltaSteppingSP {
+	private static final int SEQUENTIAL = 512; // smaller rounds run on one
+												// thread
+
+	private final CompactDigraph g;
+	private final int s;
+	private final double delta;
+	private final int threads;
+	private final AtomicLongArray dist; // bits of the tentative distances
+	private final IntDeque[] lowered; // vertices lowered by every task
+	private double[] distTo; // distTo[v] = distance of shortest s->v path
+	private int[] edgeTo; // edgeTo[v] = last edge on the tree path, -1 if none
+	private boolean tied; // are two tree edges equally good?
+	private int rounds; // number of parallel rounds
+
+	/**
+	 * Computes the shortest paths from <tt>s</tt>.
+	 *
+	 * @param delta
+	 *            width of a bucket; 0 or less for the largest weight divided
+	 *            by the average outdegree
+	 * @param threads
+	 *            number of threads
+	 * @throws IllegalArgumentException
+	 *             if an edge has negative weight
+	 */
+	public DeltaSteppingSP(CompactDigraph g, int s, double delta, int threads) {
+		double most = 0.0;
+		for (int e = 0; e < g.E(); e++) {
+			if (g.weight(e) < 0)
+				throw new IllegalArgumentException("edge " + g.edge(e)
+						+ " has negative weight");
+			most = Math.max(most, g.weight(e));
+		}
+		if (delta <= 0)
+			delta = most * g.V() / Math.max(g.E(), 1);
+		if (delta <= 0)
+			delta = 1.0;
+		this.g = g;
+		this.s = s;
+		this.delta = delta;
+		this.threads = Math.max(threads, 1);
+		dist = new AtomicLongArray(g.V());
+		lowered = new IntDeque[this.threads];
+		for (int t = 0; t < this.threads; t++)
+			lowered[t] = new IntDeque();
+
+		ExecutorService pool = Executors.newFixedThreadPool(this.threads);
+		try {
+			search(pool);
+		} finally {
+			pool.shutdown();
+		}
+		rebuildTree();
+	}
+
+	private void search(ExecutorService pool) {
+		int V = g.V();
+		long infinity = Double.doubleToLongBits(Double.POSITIVE_INFINITY);
+		for (int v = 0; v < V; v++)
+			dist.set(v, infinity);
+		dist.set(s, Double.doubleToLongBits(0.0));
+
+		TreeMap<Long, IntDeque> buckets = new TreeMap<Long, IntDeque>();
+		bucket(buckets, 0L).addLast(s);
+		int[] frontier = new int[V];
+		int[] settled = new int[V]; // vertices that left the bucket
+		int[] seen = new int[V]; // round that last took a vertex
+		int[] left = new int[V]; // number of the bucket a vertex last left
+		int round = 0, emptied = 0;
+		while (!buckets.isEmpty()) {
+			Map.Entry<Long, IntDeque> first = buckets.firstEntry();
+			long i = first.getKey();
+			IntDeque current = first.getValue();
+			int m = 0;
+			emptied++;
+			while (!current.isEmpty()) {
+				// the valid vertices of the bucket, each once
+				round++;
+				int n = 0;
+				while (!current.isEmpty()) {
+					int v = current.removeFirst();
+					if (seen[v] == round || bucketOf(v) != i)
+						continue;
+					seen[v] = round;
+					frontier[n++] = v;
+					if (left[v] != emptied) {
+						left[v] = emptied;
+						settled[m++] = v;
+					}
+				}
+				relax(pool, frontier, n, true);
+				collect(buckets);
+			}
+			buckets.remove(i);
+			relax(pool, settled, m, false);
+			collect(buckets);
+		}
+
+		distTo = new double[V];
+		for (int v = 0; v < V; v++)
+			distTo[v] = Double.longBitsToDouble(dist.get(v));
+	}
+
+	// bucket of the tentative distance of v
+	private long bucketOf(int v) {
+		return (long) (Double.longBitsToDouble(dist.get(v)) / delta);
+	}
+
+	private static IntDeque bucket(TreeMap<Long, IntDeque> buckets, long i) {
+		IntDeque b = buckets.get(i);
+		if (b == null) {
+			b = new IntDeque();
+			buckets.put(i, b);
+		}
+		return b;
+	}
+
+	// puts every lowered vertex into the bucket of its distance
+	private void collect(TreeMap<Long, IntDeque> buckets) {
+		for (IntDeque out : lowered) {
+			while (!out.isEmpty()) {
+				int w = out.removeFirst();
+				bucket(buckets, bucketOf(w)).addLast(w);
+			}
+		}
+	}
+
+	// relaxes the light (or heavy) edges of vertices[0..n), split among the
+	// threads unless there are few
+	private void relax(ExecutorService pool, final int[] vertices, int n,
+			final boolean light) {
+		if (n == 0)
+			return;
+		rounds++;
+		if (threads == 1 || n < SEQUENTIAL) {
+			relax(vertices, 0, n, light, lowered[0]);
+			return;
+		}
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int t = 0; t < threads; t++) {
+			final int lo = (int) ((long) n * t / threads);
+			final int hi = (int) ((long) n * (t + 1) / threads);
+			final IntDeque out = lowered[t];
+			tasks.add(new Callable<Void>() {
+				public Void call() {
+					relax(vertices, lo, hi, light, out);
+					return null;
+				}
+			});
+		}
+		try {
+			for (Future<Void> f : pool.invokeAll(tasks))
+				f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("delta-stepping interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private void relax(int[] vertices, int lo, int hi, boolean light,
+			IntDeque out) {
+		for (int i = lo; i < hi; i++) {
+			int v = vertices[i];
+			double dv = Double.longBitsToDouble(dist.get(v));
+			for (int e = g.begin(v); e < g.end(v); e++) {
+				double weight = g.weight(e);
+				if ((weight <= delta) != light)
+					continue;
+				int w = g.to(e);
+				long x = Double.doubleToLongBits(dv + weight);
+				// distances are not negative, so their bits order as longs
+				long old = dist.get(w);
+				while (x < old && !dist.compareAndSet(w, old, x))
+					old = dist.get(w);
+				if (x < old)
+					out.addLast(w);
+			}
+		}
+	}
+
+	// the tree of ApplyDijkstra: of the tight edges into w, the first one
+	// from the vertex closest to s
+	private void rebuildTree() {
+		int V = g.V();
+		edgeTo = new int[V];
+		for (int v = 0; v < V; v++)
+			edgeTo[v] = -1;
+		for (int v = 0; v < V && !tied; v++) {
+			if (distTo[v] == Double.POSITIVE_INFINITY)
+				continue;
+			for (int e = g.begin(v); e < g.end(v); e++) {
+				int w = g.to(e);
+				if (w == s || distTo[v] + g.weight(e) != distTo[w])
+					continue;
+				if (edgeTo[w] == -1) {
+					edgeTo[w] = e;
+				} else {
+					int u = g.from(edgeTo[w]);
+					if (u == v)
+						continue;
+					if (distTo[v] < distTo[u])
+						edgeTo[w] = e;
+					else if (distTo[v] == distTo[u])
+						tied = true;
+				}
+			}
+		}
+	}
+
+	// number of rounds of parallel relaxation
+	public int rounds() {
+		return rounds;
+	}
+
+	// width of a bucket
+	public double delta() {
+		return delta;
+	}
+
+	// were two vertices on shortest paths to the same vertex equally close?
+	public boolean tied() {
+		return tied;
+	}
+
+	/**
+	 * Returns the result as ApplyDijkstra would have found it; if there were
+	 * ties the search is made again by ApplyDijkstra.
+	 */
+	public ApplyDijkstra tree() {
+		if (tied)
+			return new ApplyDijkstra(g, s);
+		return new ApplyDijkstra(g, distTo, edgeTo);
+	}
+}
@@ -0,0 +1,404 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DifferentialHarness runs the same graphs through three all-pairs shortest
+ * path solvers and checks that they agree:
+ * <ul>
+ * <li><tt>johnson</tt>: the pipeline of this assignment, the potentials of
+ * ApplyBellmanFord on G* (with its <tt>-solver</tt>, <tt>-queue</tt> and
+ * <tt>-order</tt>), the reweighted graph G**, and the rows of
+ * ApplyDijkstraAllPairs summed in the weights of G;
+ * <li><tt>floyd</tt>: algs4's FloydWarshall, with the lightest of parallel
+ * edges since its matrix holds one edge per pair;
+ * <li><tt>bellmanford</tt>: algs4's BellmanFordSP from every vertex.
+ * </ul>
+ * Every solver must give the same verdict on negative cycles and, when there
+ * is none, the same distance for every pair (up to rounding). The checked-in
+ * samples are run first, then <tt>n</tt> random graphs with weights of two
+ * decimals, like the samples: half of them with weights <tt>x + h(v) -
+ * h(w)</tt>, <tt>x &gt; 0</tt>, which have no negative cycle, half with
+ * weights of both signs, some of which have one. One line per graph with the
+ * time of every solver is written to the CSV file, and the exit status is 1
+ * if any graph disagreed. ManyToMany and RadiusQuery, which sum the same
+ * trees as the rows, must give exactly their distances, MinPlusAllPairs the
+ * same trees, and ApplyBellmanFord must print the same potentials under
+ * every ordering and whether its PotentialCache hits or misses.
+ *
+ * java DifferentialHarness [-n count] [-V max] [-seed s] [-csv file] [-solver
+ * x] [-queue x] [-order x] [sample ...]
+ *
+ * @author SephyZhou
+ *
+ */
+public class DifferentialHarness {
+	private static final String[] SAMPLES = { "lecturegraph.txt",
+			"tinyEWDn.txt", "10-21", "12-30" };
+	private static final double EPSILON = 1e-6;
+
+	private static Out csv;
+	private static int graphs, failed;
+
+	// one graph: V vertices and the edges v[i]->w[i] of weight x[i]
+	private static void run(String name, int V, int[] v, int[] w, double[] x) {
+		int E = x.length;
+
+		// johnson
+		long start = System.nanoTime();
+		double[][] johnson = new double[V][];
+		boolean johnsonCycle = johnson(V, v, w, x, johnson);
+		double johnsonMs = (System.nanoTime() - start) / 1e6;
+
+		// floyd
+		start = System.nanoTime();
+		AdjMatrixEdgeWeightedDigraph matrix = new AdjMatrixEdgeWeightedDigraph(V);
+		DirectedEdge[][] lightest = new DirectedEdge[V][V];
+		for (int i = 0; i < E; i++)
+			if (lightest[v[i]][w[i]] == null
+					|| x[i] < lightest[v[i]][w[i]].weight())
+				lightest[v[i]][w[i]] = new DirectedEdge(v[i], w[i], x[i]);
+		for (int a = 0; a < V; a++)
+			for (int b = 0; b < V; b++)
+				if (lightest[a][b] != null)
+					matrix.addEdge(lightest[a][b]);
+		FloydWarshall floyd = new FloydWarshall(matrix);
+		double floydMs = (System.nanoTime() - start) / 1e6;
+
+		// bellmanford
+		start = System.nanoTime();
+		EdgeWeightedDigraph G = new EdgeWeightedDigraph(V);
+		for (int i = 0; i < E; i++)
+			G.addEdge(new DirectedEdge(v[i], w[i], x[i]));
+		BellmanFordSP[] bellmanFord = new BellmanFordSP[V];
+		boolean bellmanFordCycle = false;
+		for (int s = 0; s < V; s++) {
+			bellmanFord[s] = new BellmanFordSP(G, s);
+			bellmanFordCycle |= bellmanFord[s].hasNegativeCycle();
+		}
+		double bellmanFordMs = (System.nanoTime() - start) / 1e6;
+
+		// compare
+		int mismatches = 0;
+		if (johnsonCycle != floyd.hasNegativeCycle()
+				|| johnsonCycle != bellmanFordCycle) {
+			StdOut.printf("%s: negative cycle johnson %b floyd %b "
+					+ "bellmanford %b\n", name, johnsonCycle,
+					floyd.hasNegativeCycle(), bellmanFordCycle);
+			mismatches++;
+		} else if (!johnsonCycle) {
+			for (int s = 0; s < V; s++) {
+				for (int t = 0; t < V; t++) {
+					double a = johnson[s][t];
+					double b = floyd.hasPath(s, t) ? floyd.dist(s, t)
+							: Double.POSITIVE_INFINITY;
+					double c = bellmanFord[s].hasPathTo(t) ? bellmanFord[s]
+							.distTo(t) : Double.POSITIVE_INFINITY;
+					if (!same(a, b) || !same(a, c)) {
+						if (mismatches < 5)
+							StdOut.printf("%s: %d to %d johnson %s floyd %s "
+									+ "bellmanford %s\n", name, s, t, a, b, c);
+						mismatches++;
+					}
+				}
+			}
+		}
+
+		if (!johnsonCycle)
+			mismatches += queries(name, V, johnson);
+		mismatches += orderings(name, V, v, w, x);
+		mismatches += cached(name, V, v, w, x);
+
+		graphs++;
+		if (mismatches > 0)
+			failed++;
+		csv.printf("%s,%d,%d,%b,%.3f,%.3f,%.3f,%d\n", name, V, E,
+				johnsonCycle, johnsonMs, floydMs, bellmanFordMs, mismatches);
+	}
+
+	// all pairs by the pipeline into dist[s][t]; returns true if ApplyBellmanFord
+	// finds a negative cycle
+	private static boolean johnson(int V, int[] v, int[] w, double[] x,
+			double[][] dist) {
+		int E = x.length;
+		CreateAuxiliaryGraph aux = new CreateAuxiliaryGraph(V + 1);
+		for (int i = 0; i < E; i++)
+			aux.addEdge(new DirectedEdge(v[i], w[i], x[i]));
+		aux.addFinalVertex();
+		Potentials p = ApplyBellmanFord.solve(new CompactDigraph(aux), V);
+		if (p.hasNegativeCycle())
+			return true;
+
+		double[] h = new double[V];
+		for (int u = 0; u < V; u++)
+			h[u] = p.hasPathTo(u) ? p.distTo(u) : 0.0;
+		CreateAuxiliaryGraph reweighted = new CreateAuxiliaryGraph(V);
+		for (int i = 0; i < E; i++)
+			reweighted.addEdge(new DirectedEdge(v[i], w[i], x[i] + h[v[i]]
+					- h[w[i]]));
+		CompactDigraph g = new CompactDigraph(reweighted);
+		ApplyDijkstraAllPairs.pointWeight = h;
+		DifferentialHarness.g = g;
+		int[] parent = new int[V];
+		double[] weight = new double[V];
+		for (int s = 0; s < V; s++) {
+			dist[s] = new double[V];
+			ApplyDijkstraAllPairs.tree(ApplyDijkstraAllPairs.query(g, s), V,
+					parent, dist[s], weight);
+		}
+		return false;
+	}
+
+	private static CompactDigraph g; // G** of the last johnson() run
+
+	// the queries that sum the edges of a search tree in the weights of G
+	// must print the very same distances as the rows, and the trees of
+	// -engine minplus the very same paths; returns the number of pairs, and
+	// of balls and trees, that differ
+	private static int queries(String name, int V, double[][] rows) {
+		double[] h = ApplyDijkstraAllPairs.pointWeight;
+		int[] all = new int[V];
+		for (int u = 0; u < V; u++)
+			all[u] = u;
+		double[] matrix = new ManyToMany(g, h).distances(all, all, 1);
+		int differ = 0;
+		for (int s = 0; s < V; s++) {
+			for (int t = 0; t < V; t++) {
+				if (matrix[s * V + t] != rows[s][t]) {
+					if (differ < 5)
+						StdOut.printf("%s: %d to %d rows %s many-to-many %s\n",
+								name, s, t, rows[s][t], matrix[s * V + t]);
+					differ++;
+				}
+			}
+		}
+		MinPlusAllPairs minPlus = new MinPlusAllPairs(g, 1);
+		int[] parent = new int[V], dijkstraParent = new int[V];
+		double[] length = new double[V], weight = new double[V];
+		for (int s = 0; s < V; s++) {
+			if (!minPlus.tree(s, h, parent, length, weight))
+				continue; // left to Dijkstra
+			ApplyDijkstraAllPairs.tree(ApplyDijkstraAllPairs.query(g, s), V,
+					dijkstraParent, new double[V], new double[V]);
+			boolean same = true;
+			for (int t = 0; same && t < V; t++)
+				same = parent[t] == dijkstraParent[t]
+						&& Double.compare(length[t], rows[s][t]) == 0;
+			if (!same) {
+				if (differ < 5)
+					StdOut.printf("%s: -engine minplus row %d differs\n",
+							name, s);
+				differ++;
+			}
+		}
+		RadiusQuery radius = new RadiusQuery(g, h);
+		for (int s = 0; s < V; s++) {
+			double D = 0.0;
+			int reached = 0;
+			for (int t = 0; t < V; t++) {
+				if (rows[s][t] < Double.POSITIVE_INFINITY) {
+					D = Math.max(D, rows[s][t]);
+					reached++;
+				}
+			}
+			RadiusQuery.Ball ball = radius.within(s, D);
+			boolean same = ball.size() == reached;
+			for (int i = 0; same && i < ball.size(); i++)
+				same = ball.distance(i) == rows[s][ball.vertex(i)];
+			if (!same) {
+				if (differ < 5)
+					StdOut.printf("%s: radius query from %d differs\n", name,
+							s);
+				differ++;
+			}
+		}
+		return differ;
+	}
+
+	private static final String[] ORDERINGS = { "bfs", "rcm", "degree" };
+
+	// the potentials of ApplyBellmanFord under every vertex ordering must be
+	// printed exactly as without one, the negative cycle included; returns
+	// the number of orderings that differ
+	private static int orderings(String name, int V, int[] v, int[] w,
+			double[] x) {
+		CreateAuxiliaryGraph aux = new CreateAuxiliaryGraph(V + 1);
+		for (int i = 0; i < x.length; i++)
+			aux.addEdge(new DirectedEdge(v[i], w[i], x[i]));
+		aux.addFinalVertex();
+		CompactDigraph g = new CompactDigraph(aux);
+		String saved = ApplyBellmanFord.order;
+		int differ = 0;
+		try {
+			ApplyBellmanFord.order = null;
+			String plain = render(ApplyBellmanFord.solve(g, V), V);
+			for (String kind : ORDERINGS) {
+				ApplyBellmanFord.order = kind;
+				if (!plain.equals(render(ApplyBellmanFord.solve(g, V), V))) {
+					StdOut.printf("%s: -order %s prints other potentials\n",
+							name, kind);
+					differ++;
+				}
+			}
+		} finally {
+			ApplyBellmanFord.order = saved;
+		}
+		return differ;
+	}
+
+	private static final String[][] SETTINGS = { { "spfa", "fifo", null },
+			{ "spfa", "slf", null }, { "spfa", "gr", "rcm" },
+			{ "scc", "fifo", null }, { "goldberg", "fifo", "bfs" } };
+
+	// every run through PotentialCache, a miss and then a hit, must print
+	// what a run without it prints under the same -solver, -queue and
+	// -order, whatever entries the other settings left behind; returns the
+	// number of runs that differ
+	private static int cached(String name, int V, int[] v, int[] w,
+			double[] x) {
+		CreateAuxiliaryGraph aux = new CreateAuxiliaryGraph(V + 1);
+		for (int i = 0; i < x.length; i++)
+			aux.addEdge(new DirectedEdge(v[i], w[i], x[i]));
+		aux.addFinalVertex();
+		CompactDigraph g = new CompactDigraph(aux);
+		String solver = ApplyBellmanFord.solver;
+		String discipline = ApplyBellmanFord.discipline;
+		String order = ApplyBellmanFord.order;
+		File dir = null;
+		int differ = 0;
+		try {
+			dir = Files.createTempDirectory("potentials").toFile();
+			PotentialCache cache = new PotentialCache(dir, Long.MAX_VALUE,
+					Long.MAX_VALUE);
+			for (String[] setting : SETTINGS) {
+				ApplyBellmanFord.solver = setting[0];
+				ApplyBellmanFord.discipline = setting[1];
+				ApplyBellmanFord.order = setting[2];
+				String fresh = render(ApplyBellmanFord.solve(g, V), V);
+				for (String run : new String[] { "miss", "hit" }) {
+					if (!fresh.equals(render(cache.solve(g, V), V))) {
+						StdOut.printf("%s: cache %s under %s prints other "
+								+ "potentials\n", name, run,
+								ApplyBellmanFord.settings());
+						differ++;
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		} finally {
+			ApplyBellmanFord.solver = solver;
+			ApplyBellmanFord.discipline = discipline;
+			ApplyBellmanFord.order = order;
+			if (dir != null) {
+				for (File f : dir.listFiles())
+					f.delete();
+				dir.delete();
+			}
+		}
+		return differ;
+	}
+
+	// the negative cycle, or the distances, as ApplyBellmanFord prints them
+	static String render(Potentials p, int V) {
+		StringBuilder out = new StringBuilder();
+		if (p.hasNegativeCycle()) {
+			for (DirectedEdge e : p.negativeCycle())
+				out.append(e).append('\n');
+		} else {
+			for (int u = 0; u < V; u++)
+				out.append(p.hasPathTo(u) ? p.distTo(u) : 0.0).append('\n');
+		}
+		return out.toString();
+	}
+
+	private static boolean same(double a, double b) {
+		if (a == b)
+			return true;
+		return Math.abs(a - b) <= EPSILON * Math.max(1.0, Math.abs(a));
+	}
+
+	private static void sample(String file) {
+		In in = new In(file);
+		int V = in.readInt();
+		int E = in.readInt();
+		int[] v = new int[E];
+		int[] w = new int[E];
+		double[] x = new double[E];
+		for (int i = 0; i < E; i++) {
+			v[i] = in.readInt();
+			w[i] = in.readInt();
+			x[i] = in.readDouble();
+		}
+		in.close();
+		run(file, V, v, w, x);
+	}
+
+	// a random graph of at most maxV vertices, without a negative cycle if
+	// potential is set
+	private static void random(int i, int maxV, boolean potential) {
+		int V = 2 + StdRandom.uniform(maxV - 1);
+		int E = StdRandom.uniform(4 * V);
+		int[] v = new int[E];
+		int[] w = new int[E];
+		double[] x = new double[E];
+		double[] h = new double[V];
+		for (int u = 0; u < V; u++)
+			h[u] = StdRandom.uniform(5000) / 100.0;
+		for (int k = 0; k < E; k++) {
+			v[k] = StdRandom.uniform(V);
+			w[k] = StdRandom.uniform(V);
+			if (potential)
+				x[k] = (1 + StdRandom.uniform(3000)) / 100.0 + h[v[k]] - h[w[k]];
+			else
+				x[k] = (StdRandom.uniform(3500) - 500) / 100.0;
+		}
+		run((potential ? "potential-" : "mixed-") + i, V, v, w, x);
+	}
+
+	public static void main(String[] args) {
+		int n = 200, maxV = 40;
+		long seed = 1501;
+		String file = "harness.csv";
+		List<String> samples = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-n"))
+				n = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-V"))
+				maxV = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-seed"))
+				seed = Long.parseLong(args[++i]);
+			else if (args[i].equals("-csv"))
+				file = args[++i];
+			else if (args[i].equals("-solver"))
+				ApplyBellmanFord.solver = args[++i];
+			else if (args[i].equals("-queue"))
+				ApplyBellmanFord.discipline = args[++i];
+			else if (args[i].equals("-order"))
+				ApplyBellmanFord.order = ApplyDijkstraAllPairs.order = args[++i];
+			else
+				samples.add(args[i]);
+		}
+		if (samples.isEmpty())
+			for (String s : SAMPLES)
+				if (new File(s).exists())
+					samples.add(s);
+
+		csv = new Out(file);
+		csv.println("graph,V,E,negative cycle,johnson ms,floyd ms,"
+				+ "bellmanford ms,mismatches");
+		for (String s : samples)
+			sample(s);
+		StdRandom.setSeed(seed);
+		for (int i = 0; i < n; i++)
+			random(i, maxV, i % 2 == 0);
+		csv.close();
+
+		StdOut.printf("%d graphs, %d disagreed; timings in %s\n", graphs,
+				failed, file);
+		if (failed > 0)
+			System.exit(1);
+	}
+}
@@ -0,0 +1,559 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * DistanceOracle answers approximate distances between two vertices of G in
+ * constant time, after building tables of about <em>kV</em><sup>1+1/k</sup>
+ * entries, for graphs too large for ApplyDijkstraAllPairs. It follows Thorup
+ * and Zwick's oracle on the reweighted graph G**, whose weights are not
+ * negative:
+ * <ul>
+ * <li>vertices are sampled into levels <em>V = A<sub>0</sub> &sup;
+ * A<sub>1</sub> &sup; ... &sup; A<sub>k-1</sub></em>, each keeping a vertex
+ * of the level below with probability <em>V<sup>-1/k</sup></em>;
+ * <li>every vertex stores its nearest vertex of every level, both the one it
+ * reaches (its pivot out) and the one that reaches it (its pivot in), with
+ * their distances;
+ * <li>the out-bunch of <tt>v</tt> holds every <tt>w</tt> of level <em>i</em>
+ * (and not <em>i+1</em>) that <tt>v</tt> reaches strictly sooner than level
+ * <em>i+1</em>, with the distance; the in-bunch likewise with the edges
+ * turned around. The bunches are found center by center with searches
+ * truncated at those bounds, spread over several threads.
+ * </ul>
+ * A query <tt>s-t</tt> is exact if <tt>t</tt> is in the out-bunch of
+ * <tt>s</tt> or <tt>s</tt> in the in-bunch of <tt>t</tt>; otherwise it tries,
+ * on every level, the pivot out of <tt>s</tt> against the in-bunch of
+ * <tt>t</tt> and the pivot in of <tt>t</tt> against the out-bunch of
+ * <tt>s</tt>, and keeps the shortest path found, so it takes <em>O(k)</em>
+ * table lookups. The result is corrected by the vertex weights back to the
+ * weights of G.
+ * <p>
+ * On undirected graphs this gives Thorup and Zwick's stretch of at most
+ * <em>2k-1</em>; on directed graphs there is no such bound. An estimate is
+ * still always the length of a real path, so it is never below the true
+ * distance, and it is infinite when no pivot connects the two vertices, even
+ * if <tt>t</tt> can be reached. A larger <tt>k</tt> trades accuracy for
+ * space.
+ *
+ * <pre>
+ * ... | java ApplyBellmanFord s | java DistanceOracle -save file [-k k] [-threads n] [-seed x]
+ * java DistanceOracle -load file s t [s t ...]
+ * </pre>
+ *
+ * @author SephyZhou
+ *
+ */
+public class DistanceOracle {
+	private static final int MAGIC = 0x545A4F31; // "TZO1"
+
+	private final int V;
+	private final int k;
+	private final double[] h; // vertex weights of G**
+	private final int[][] pivotOut; // pivotOut[i][v] = nearest vertex of
+									// level i that v reaches, -1 if none
+	private final double[][] distOut; // distOut[i][v] = its distance
+	private final int[][] pivotIn; // pivotIn[i][v] = nearest vertex of level
+									// i that reaches v, -1 if none
+	private final double[][] distIn; // distIn[i][v] = its distance
+	private final Bunches out; // (v, w) -> d(v, w), w in the out-bunch of v
+	private final Bunches in; // (v, w) -> d(w, v), w in the in-bunch of v
+
+	/**
+	 * Builds the oracle of G** with <tt>k</tt> levels on <tt>threads</tt>
+	 * threads.
+	 *
+	 * @param h
+	 *            the vertex weights ApplyBellmanFord reweighted G with
+	 * @throws IllegalArgumentException
+	 *             if an edge has negative weight or <tt>k</tt> &lt; 1
+	 */
+	public DistanceOracle(final CompactDigraph g, double[] h, int k,
+			int threads, long seed) {
+		if (k < 1)
+			throw new IllegalArgumentException("k must be at least 1");
+		for (int e = 0; e < g.E(); e++) {
+			if (g.weight(e) < 0)
+				throw new IllegalArgumentException("edge " + g.edge(e)
+						+ " has negative weight");
+		}
+		this.V = g.V();
+		this.k = k;
+		this.h = h;
+		final CompactDigraph reverse = g.reverse();
+
+		// level[v] = highest level v belongs to
+		final int[] level = new int[V];
+		Random random = new Random(seed);
+		double keep = Math.pow(Math.max(V, 2), -1.0 / k);
+		for (int v = 0; v < V; v++)
+			while (level[v] + 1 < k && random.nextDouble() < keep)
+				level[v]++;
+
+		pivotOut = new int[k + 1][];
+		distOut = new double[k + 1][];
+		pivotIn = new int[k + 1][];
+		distIn = new double[k + 1][];
+		pivotOut[k] = pivotIn[k] = new int[V];
+		distOut[k] = distIn[k] = new double[V];
+		for (int v = 0; v < V; v++) {
+			pivotOut[k][v] = -1;
+			distOut[k][v] = Double.POSITIVE_INFINITY;
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(threads,
+				1));
+		final ThreadLocal<Search> scratch = new ThreadLocal<Search>() {
+			protected Search initialValue() {
+				return new Search(V);
+			}
+		};
+		try {
+			// the pivots of every level, two searches from all its vertices
+			List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+			for (int i = 0; i < k; i++) {
+				final int l = i;
+				final int[] sources = members(level, l);
+				pivotOut[l] = new int[V];
+				distOut[l] = new double[V];
+				pivotIn[l] = new int[V];
+				distIn[l] = new double[V];
+				tasks.add(new Callable<Void>() {
+					public Void call() {
+						scratch.get().nearest(reverse, sources, pivotOut[l],
+								distOut[l]);
+						return null;
+					}
+				});
+				tasks.add(new Callable<Void>() {
+					public Void call() {
+						scratch.get().nearest(g, sources, pivotIn[l],
+								distIn[l]);
+						return null;
+					}
+				});
+			}
+			run(pool, tasks);
+
+			// the bunches, a batch of centers per task
+			List<Callable<Entries>> clusters = new ArrayList<Callable<Entries>>();
+			int batch = Math.max(1, V / (16 * Math.max(threads, 1)));
+			for (int lo = 0; lo < V; lo += batch) {
+				final int from = lo, until = Math.min(V, lo + batch);
+				clusters.add(new Callable<Entries>() {
+					public Entries call() {
+						Search search = scratch.get();
+						Entries found = new Entries();
+						for (int w = from; w < until; w++) {
+							int above = level[w] + 1;
+							search.cluster(reverse, w, distOut[above], found,
+									true);
+							search.cluster(g, w, distIn[above], found, false);
+						}
+						return found;
+					}
+				});
+			}
+			List<Entries> found = run(pool, clusters);
+			int nOut = 0, nIn = 0;
+			for (Entries f : found) {
+				nOut += f.out.size() / 2;
+				nIn += f.in.size() / 2;
+			}
+			out = new Bunches(nOut);
+			in = new Bunches(nIn);
+			for (Entries f : found) {
+				f.drain(f.out, f.outDist, out);
+				f.drain(f.in, f.inDist, in);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private DistanceOracle(int V, int k, double[] h, int[][] pivotOut,
+			double[][] distOut, int[][] pivotIn, double[][] distIn,
+			Bunches out, Bunches in) {
+		this.V = V;
+		this.k = k;
+		this.h = h;
+		this.pivotOut = pivotOut;
+		this.distOut = distOut;
+		this.pivotIn = pivotIn;
+		this.distIn = distIn;
+		this.out = out;
+		this.in = in;
+	}
+
+	// the vertices of level i or above
+	private static int[] members(int[] level, int i) {
+		int n = 0;
+		for (int v = 0; v < level.length; v++)
+			if (level[v] >= i)
+				n++;
+		int[] a = new int[n];
+		n = 0;
+		for (int v = 0; v < level.length; v++)
+			if (level[v] >= i)
+				a[n++] = v;
+		return a;
+	}
+
+	private static <T> List<T> run(ExecutorService pool,
+			List<Callable<T>> tasks) {
+		List<T> results = new ArrayList<T>();
+		try {
+			for (Future<T> f : pool.invokeAll(tasks))
+				results.add(f.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("oracle interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+		return results;
+	}
+
+	/**
+	 * Returns an upper bound on the distance from <tt>s</tt> to <tt>t</tt> in
+	 * G, exact if one of them is in a bunch of the other; infinite if the
+	 * oracle knows no path.
+	 */
+	public double distance(int s, int t) {
+		if (s == t)
+			return 0.0;
+		double best = out.get(s, t);
+		if (best == Double.POSITIVE_INFINITY)
+			best = in.get(t, s);
+		if (best == Double.POSITIVE_INFINITY) {
+			for (int i = 1; i < k; i++) {
+				int w = pivotOut[i][s];
+				if (w != -1)
+					best = Math.min(best, distOut[i][s] + in.get(t, w));
+				w = pivotIn[i][t];
+				if (w != -1)
+					best = Math.min(best, out.get(s, w) + distIn[i][t]);
+			}
+		}
+		if (best == Double.POSITIVE_INFINITY)
+			return best;
+		return best - h[s] + h[t];
+	}
+
+	// number of vertices
+	public int V() {
+		return V;
+	}
+
+	// number of levels
+	public int k() {
+		return k;
+	}
+
+	// number of bunch entries, in and out
+	public int size() {
+		return out.size() + in.size();
+	}
+
+	/**
+	 * Writes the oracle to <tt>file</tt>; load() reads it back.
+	 */
+	public void save(String file) throws IOException {
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file), 1 << 16));
+		try {
+			data.writeInt(MAGIC);
+			data.writeInt(V);
+			data.writeInt(k);
+			for (int v = 0; v < V; v++)
+				data.writeDouble(h[v]);
+			for (int i = 0; i < k; i++) {
+				for (int v = 0; v < V; v++) {
+					data.writeInt(pivotOut[i][v]);
+					data.writeDouble(distOut[i][v]);
+					data.writeInt(pivotIn[i][v]);
+					data.writeDouble(distIn[i][v]);
+				}
+			}
+			out.write(data);
+			in.write(data);
+		} finally {
+			data.close();
+		}
+	}
+
+	/**
+	 * @throws IOException
+	 *             if <tt>file</tt> cannot be read or is not an oracle
+	 */
+	public static DistanceOracle load(String file) throws IOException {
+		DataInputStream data = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file), 1 << 16));
+		try {
+			if (data.readInt() != MAGIC)
+				throw new IOException(file + " is not a distance oracle");
+			int V = data.readInt();
+			int k = data.readInt();
+			double[] h = new double[V];
+			for (int v = 0; v < V; v++)
+				h[v] = data.readDouble();
+			int[][] pivotOut = new int[k][V];
+			double[][] distOut = new double[k][V];
+			int[][] pivotIn = new int[k][V];
+			double[][] distIn = new double[k][V];
+			for (int i = 0; i < k; i++) {
+				for (int v = 0; v < V; v++) {
+					pivotOut[i][v] = data.readInt();
+					distOut[i][v] = data.readDouble();
+					pivotIn[i][v] = data.readInt();
+					distIn[i][v] = data.readDouble();
+				}
+			}
+			Bunches out = Bunches.read(data);
+			Bunches in = Bunches.read(data);
+			return new DistanceOracle(V, k, h, pivotOut, distOut, pivotIn,
+					distIn, out, in);
+		} finally {
+			data.close();
+		}
+	}
+
+	/**
+	 * The scratch space of the searches of one thread, reset by stamping.
+	 */
+	private static class Search {
+		private final double[] dist;
+		private final int[] stamp;
+		private final IndexMinHeap pq;
+		private int search;
+
+		Search(int V) {
+			dist = new double[V];
+			stamp = new int[V];
+			pq = new IndexMinHeap(V);
+		}
+
+		private double dist(int v) {
+			return stamp[v] == search ? dist[v] : Double.POSITIVE_INFINITY;
+		}
+
+		private void reach(int v, double d) {
+			dist[v] = d;
+			stamp[v] = search;
+		}
+
+		// nearest source of every vertex over the edges of g, with distance
+		void nearest(CompactDigraph g, int[] sources, int[] pivot,
+				double[] distance) {
+			search++;
+			for (int v = 0; v < pivot.length; v++) {
+				pivot[v] = -1;
+				distance[v] = Double.POSITIVE_INFINITY;
+			}
+			for (int s : sources) {
+				reach(s, 0.0);
+				pivot[s] = s;
+				pq.insert(s, 0.0);
+			}
+			while (!pq.isEmpty()) {
+				int v = pq.delMin();
+				distance[v] = dist[v];
+				for (int e = g.begin(v); e < g.end(v); e++) {
+					int w = g.to(e);
+					double d = dist[v] + g.weight(e);
+					if (dist(w) > d) {
+						reach(w, d);
+						pivot[w] = pivot[v];
+						if (pq.contains(w))
+							pq.decreaseKey(w, d);
+						else
+							pq.insert(w, d);
+					}
+				}
+			}
+		}
+
+		// the vertices w is nearer to than bound[v] over the edges of g
+		void cluster(CompactDigraph g, int w, double[] bound, Entries found,
+				boolean out) {
+			search++;
+			reach(w, 0.0);
+			pq.insert(w, 0.0);
+			while (!pq.isEmpty()) {
+				int v = pq.delMin();
+				if (v != w)
+					found.add(v, w, dist[v], out);
+				for (int e = g.begin(v); e < g.end(v); e++) {
+					int x = g.to(e);
+					double d = dist[v] + g.weight(e);
+					if (d < bound[x] && dist(x) > d) {
+						reach(x, d);
+						if (pq.contains(x))
+							pq.decreaseKey(x, d);
+						else
+							pq.insert(x, d);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Bunch entries found by one task, merged into the tables afterwards.
+	 */
+	private static class Entries {
+		final IntDeque out = new IntDeque(), in = new IntDeque();
+		double[] outDist = new double[16], inDist = new double[16];
+
+		void add(int v, int w, double d, boolean toOut) {
+			IntDeque pairs = toOut ? out : in;
+			double[] dist = toOut ? outDist : inDist;
+			int n = pairs.size() / 2;
+			if (n == dist.length) {
+				dist = Arrays.copyOf(dist, 2 * n);
+				if (toOut)
+					outDist = dist;
+				else
+					inDist = dist;
+			}
+			dist[n] = d;
+			pairs.addLast(v);
+			pairs.addLast(w);
+		}
+
+		void drain(IntDeque pairs, double[] dist, Bunches into) {
+			for (int i = 0; !pairs.isEmpty(); i++)
+				into.put(pairs.removeFirst(), pairs.removeFirst(), dist[i]);
+		}
+	}
+
+	/**
+	 * Hash table from vertex pairs to distances, open addressing with linear
+	 * probing over flat arrays.
+	 */
+	private static class Bunches {
+		private final long[] keys; // (v << 32 | w) + 1, 0 if empty
+		private final double[] values;
+		private final int mask;
+		private int n;
+
+		Bunches(int capacity) {
+			int m = 2;
+			while (m < 2 * capacity)
+				m <<= 1;
+			keys = new long[m];
+			values = new double[m];
+			mask = m - 1;
+		}
+
+		private static long key(int v, int w) {
+			return ((long) v << 32 | (w & 0xffffffffL)) + 1;
+		}
+
+		private int slot(long key) {
+			long x = key * 0x9E3779B97F4A7C15L;
+			return (int) (x >>> 33) & mask;
+		}
+
+		void put(int v, int w, double d) {
+			long key = key(v, w);
+			int i = slot(key);
+			while (keys[i] != 0 && keys[i] != key)
+				i = (i + 1) & mask;
+			if (keys[i] == 0)
+				n++;
+			keys[i] = key;
+			values[i] = d;
+		}
+
+		double get(int v, int w) {
+			long key = key(v, w);
+			for (int i = slot(key); keys[i] != 0; i = (i + 1) & mask)
+				if (keys[i] == key)
+					return values[i];
+			return Double.POSITIVE_INFINITY;
+		}
+
+		int size() {
+			return n;
+		}
+
+		void write(DataOutputStream data) throws IOException {
+			data.writeInt(n);
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i] != 0) {
+					data.writeLong(keys[i] - 1);
+					data.writeDouble(values[i]);
+				}
+			}
+		}
+
+		static Bunches read(DataInputStream data) throws IOException {
+			int n = data.readInt();
+			Bunches b = new Bunches(n);
+			for (int i = 0; i < n; i++) {
+				long key = data.readLong();
+				b.put((int) (key >>> 32), (int) key, data.readDouble());
+			}
+			return b;
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		String save = null, load = null;
+		int k = 3, threads = Runtime.getRuntime().availableProcessors();
+		long seed = 1501;
+		List<Integer> pairs = new ArrayList<Integer>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-save"))
+				save = args[++i];
+			else if (args[i].equals("-load"))
+				load = args[++i];
+			else if (args[i].equals("-k"))
+				k = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-threads"))
+				threads = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-seed"))
+				seed = Long.parseLong(args[++i]);
+			else
+				pairs.add(Integer.parseInt(args[i]));
+		}
+
+		DistanceOracle oracle;
+		if (load != null) {
+			oracle = load(load);
+		} else {
+			ApplyDijkstraAllPairs.readGraphFromBF();
+			CompactDigraph G = new CompactDigraph();
+			oracle = new DistanceOracle(G, ApplyDijkstraAllPairs.pointWeight,
+					k, threads, seed);
+			System.err.printf("oracle: %d vertices, k = %d, %d entries%n",
+					oracle.V(), oracle.k(), oracle.size());
+			if (save != null)
+				oracle.save(save);
+		}
+		for (int i = 0; i + 1 < pairs.size(); i += 2) {
+			int s = pairs.get(i), t = pairs.get(i + 1);
+			double d = oracle.distance(s, t);
+			if (d == Double.POSITIVE_INFINITY)
+				StdOut.printf("%d to %d\tno estimate\n", s, t);
+			else if (d < 0)
+				StdOut.printf("%d to %d (%.2f)\n", s, t, d);
+			else
+				StdOut.printf("%d to %d ( %.2f)\n", s, t, d);
+		}
+	}
+}
@@ -0,0 +1,61 @@
+/**
+ * FloatDigraph is the graph G** as the single-precision mode of
+ * ApplyDijkstraAllPairs sees it: the vertices and edges of a CompactDigraph,
+ * in the same order, so searches visit them in the same order, with every
+ * edge weight rounded once to a <tt>float</tt>.
+ *
+ * @author SephyZhou
+ *
+ */
+public class FloatDigraph {
+	private final CompactDigraph g;
+	private final float[] weight; // weight[e] = weight of edge e
+
+	/**
+	 * Initializes a single-precision view of <tt>g</tt>.
+	 *
+	 * @param g
+	 *            the graph whose weights are rounded
+	 */
+	public FloatDigraph(CompactDigraph g) {
+		this.g = g;
+		weight = new float[g.E()];
+		for (int e = 0; e < g.E(); e++)
+			weight[e] = (float) g.weight(e);
+	}
+
+	// number of vertices
+	public int V() {
+		return g.V();
+	}
+
+	// number of edges
+	public int E() {
+		return g.E();
+	}
+
+	// index of the first edge leaving v
+	public int begin(int v) {
+		return g.begin(v);
+	}
+
+	// one past the index of the last edge leaving v
+	public int end(int v) {
+		return g.end(v);
+	}
+
+	// tail of edge e
+	public int from(int e) {
+		return g.from(e);
+	}
+
+	// head of edge e
+	public int to(int e) {
+		return g.to(e);
+	}
+
+	// weight of edge e
+	public float weight(int e) {
+		return weight[e];
+	}
+}
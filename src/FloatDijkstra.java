@@ -0,0 +1,69 @@
+/**
+ * FloatDijkstra runs Dijkstra's algorithm from one vertex of a FloatDigraph.
+ * The edge weights are stored in single precision, but path lengths are
+ * accumulated in <tt>double</tt> so the rounding error of a long path does not
+ * grow with every edge added to it.
+ *
+ * @author SephyZhou
+ *
+ */
+public class FloatDijkstra {
+
+	private double[] distTo; // distTo[v] = distance of shortest s->v path
+	private int[] edgeTo; // edgeTo[v] = index of last edge on shortest s->v
+							// path, -1 if none
+	private IndexMinPQ<Double> pq; // priority queue of vertices
+
+	public FloatDijkstra(FloatDigraph g, int s) {
+		for (int e = 0; e < g.E(); e++) {
+			if (g.weight(e) < 0)
+				throw new IllegalArgumentException("edge " + g.from(e) + "->"
+						+ g.to(e) + " has negative weight");
+		}
+
+		distTo = new double[g.V()];
+		edgeTo = new int[g.V()];
+		for (int v = 0; v < g.V(); v++) {
+			distTo[v] = Double.POSITIVE_INFINITY;
+			edgeTo[v] = -1;
+		}
+		distTo[s] = 0.0;
+
+		// relax vertices in order of distance from s
+		pq = new IndexMinPQ<Double>(g.V());
+		pq.insert(s, distTo[s]);
+		while (!pq.isEmpty()) {
+			int v = pq.delMin();
+			for (int e = g.begin(v); e < g.end(v); e++)
+				relax(g, e);
+		}
+	}
+
+	// relax edge e and update pq if changed
+	private void relax(FloatDigraph g, int e) {
+		int v = g.from(e), w = g.to(e);
+		if (distTo[w] > distTo[v] + g.weight(e)) {
+			distTo[w] = distTo[v] + g.weight(e);
+			edgeTo[w] = e;
+			if (pq.contains(w))
+				pq.decreaseKey(w, distTo[w]);
+			else
+				pq.insert(w, distTo[w]);
+		}
+	}
+
+	// length of shortest path from s to v
+	public double distTo(int v) {
+		return distTo[v];
+	}
+
+	// is there a path from s to v?
+	public boolean hasPathTo(int v) {
+		return distTo[v] < Double.POSITIVE_INFINITY;
+	}
+
+	// index of the last edge on the shortest path from s to v, -1 if none
+	public int edgeTo(int v) {
+		return edgeTo[v];
+	}
+}
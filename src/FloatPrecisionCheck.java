@@ -0,0 +1,70 @@
+/**
+ * FloatPrecisionCheck validates the single-precision mode of
+ * ApplyDijkstraAllPairs. It reads the output of ApplyBellmanFord, runs the
+ * all-pairs computation once with double and once with float storage, and
+ * reports the largest deviation between the two distance matrices in the
+ * original graph G, together with the number of pairs whose printed value
+ * (two decimals) differs.
+ *
+ * cat lecturegraph.txt | java CreateAuxiliaryGraph | java ApplyBellmanFord 6
+ * | java FloatPrecisionCheck
+ *
+ * @author SephyZhou
+ *
+ */
+public class FloatPrecisionCheck {
+
+	public static void main(String[] args) {
+		ApplyDijkstraAllPairs.readGraphFromBF();
+		double[] pointWeight = ApplyDijkstraAllPairs.pointWeight;
+		float[] pw = ApplyDijkstraAllPairs.toFloat(pointWeight);
+		CreateAuxiliaryGraph G = new CreateAuxiliaryGraph(
+				"FloatPrecisionCheck", 0);
+		CompactDigraph D = new CompactDigraph(G);
+		FloatDigraph F = new FloatDigraph(D);
+		int n = G.V();
+		int path[] = new int[n];
+
+		double maxAbs = 0.0;
+		int worstS = -1, worstT = -1;
+		long pairs = 0, printed = 0, reach = 0;
+		for (int s = 0; s < n; s++) {
+			ApplyDijkstra exact = new ApplyDijkstra(D, s);
+			FloatDijkstra single = new FloatDijkstra(F, s);
+			for (int t = 0; t < n; t++) {
+				if (exact.hasPathTo(t) != single.hasPathTo(t)) {
+					reach++;
+					continue;
+				}
+				if (!exact.hasPathTo(t))
+					continue;
+				double d = 0.0;
+				for (DirectedEdge e : exact.pathTo(t))
+					d += e.weight() - pointWeight[e.from()]
+							+ pointWeight[e.to()];
+				double sum = 0.0;
+				int k = ApplyDijkstraAllPairs.pathEdges(F, single, t, path);
+				for (int i = 0; i < k; i++) {
+					int e = path[i];
+					sum += (double) F.weight(e) - pw[F.from(e)] + pw[F.to(e)];
+				}
+				double f = (float) sum;
+
+				pairs++;
+				double abs = Math.abs(d - f);
+				if (abs > maxAbs) {
+					maxAbs = abs;
+					worstS = s;
+					worstT = t;
+				}
+				if (!String.format("%.2f", d).equals(String.format("%.2f", f)))
+					printed++;
+			}
+		}
+		StdOut.println("pairs compared          " + pairs);
+		StdOut.println("reachability mismatches " + reach);
+		StdOut.println("max absolute deviation  " + maxAbs
+				+ (worstS < 0 ? "" : " (" + worstS + " to " + worstT + ")"));
+		StdOut.println("printed values changed  " + printed);
+	}
+}
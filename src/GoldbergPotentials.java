@@ -0,0 +1,492 @@
+/**
+ * GoldbergPotentials computes the vertex weights of ApplyBellmanFord with
+ * Goldberg's scaling algorithm (<tt>java ApplyBellmanFord s -solver
+ * goldberg</tt>), which takes O(&radic;<em>V</em> <em>E</em> log <em>N</em>)
+ * time for integer weights no less than -<em>N</em> instead of the
+ * O(<em>VE</em>) of Bellman-Ford.
+ * <p>
+ * The weights are made integers first: they are multiplied by the least power
+ * of ten (at most 10<sup>9</sup>) that leaves no fraction. The bits of the
+ * weights are then brought in one at a time, from the highest. A phase starts
+ * from integer potentials <tt>p</tt> under which every reduced cost
+ * <tt>c(v,w) + p(v) - p(w)</tt> is at least -1, and lowers potentials until
+ * none is negative. An edge of reduced cost -1 or 0 is admissible; a
+ * strongly connected component of admissible edges that holds a -1 edge
+ * closes a negative cycle. Otherwise the components form a DAG in which
+ * every vertex is given the least cost <tt>d</tt> of an admissible path
+ * ending at it, and every step removes either all -1 edges into one layer
+ * <tt>d = -i</tt> (by lowering the potentials of every vertex with
+ * <tt>d &le; -i</tt> by one) or all -1 edges on a longest chain of layers (by
+ * lowering the potentials along the chain and a closure of it found with a
+ * bucket-based Dijkstra). Both remove at least &radic;<em>k</em> of the
+ * <em>k</em> edges of cost -1 left. A step first tries the closure of all
+ * layers at once, which usually removes nearly every -1 edge, and keeps it
+ * when it does at least as well as both. Rounding the scaled weights up makes
+ * a cycle that is negative in a phase negative in G* as well.
+ * <p>
+ * Feasible potentials are not yet the distances from s that ApplyBellmanFord
+ * prints. They are found by one Dijkstra search on the reduced costs, after
+ * which the distances are summed in double along the shortest paths tree and
+ * relaxed once more in double, so that no reweighted edge of G** comes out
+ * below zero by rounding.
+ *
+ * @author SephyZhou
+ *
+ */
+public class GoldbergPotentials implements Potentials {
+	private static final int MAX_DIGITS = 9; // most decimal digits scaled away
+
+	private final CompactDigraph g;
+	private final int V;
+	private final long[] cost; // cost[e] = weight of e times scale
+	private final long[] p; // p[v] = potential of v in the current phase
+	private long[] phaseCost; // cost of every edge in the current phase
+	private double scale; // the weights times scale are integers
+	private double[] distTo; // distTo[v] = distance of shortest s->v path
+	private Stack<DirectedEdge> cycle; // negative cycle, null if none
+	private int phases; // number of scaling phases
+	private int steps; // number of relabel steps over all phases
+
+	// admissible graph of the current step and its components
+	private CompactDigraph admissible;
+	private CompactSCC scc;
+	private final int[] aFirst, aFrom, aTo, aOrigin;
+	private final double[] aWeight;
+	private final int[] d; // least cost of an admissible path to a component
+	private final int[] parent; // admissible edge that gives it, -1 if none
+	private final int[] count; // -1 edges into every layer
+
+	// closure of the current step
+	private final int[] demand; // least delta of every vertex, -1 if none
+	private final int[] delta; // amount every potential is lowered by
+	private final int[] raisedBy; // edge that set delta, -1 for demands
+	private final boolean[] done;
+	private final int[] head, next, item; // buckets of vertices by delta
+
+	/**
+	 * Computes the distances from <tt>s</tt> in <tt>g</tt>, or finds a
+	 * negative cycle.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if a weight has more than nine decimal digits, or the
+	 *             scaled weights do not fit in a long
+	 */
+	public GoldbergPotentials(CompactDigraph g, int s) {
+		this.g = g;
+		V = g.V();
+		cost = integerCosts(g);
+		p = new long[V];
+		int E = g.E();
+		aFirst = new int[V + 1];
+		aFrom = new int[E];
+		aTo = new int[E];
+		aOrigin = new int[E];
+		aWeight = new double[E];
+		d = new int[V];
+		parent = new int[V];
+		count = new int[V + 1];
+		demand = new int[V];
+		delta = new int[V];
+		raisedBy = new int[V];
+		done = new boolean[V];
+		head = new int[V + 1];
+		next = new int[V + E];
+		item = new int[V + E];
+
+		long N = 0; // largest negative cost, negated
+		for (int e = 0; e < g.E(); e++)
+			N = Math.max(N, -cost[e]);
+		int bits = 0;
+		while (bits < 62 && (1L << bits) < N)
+			bits++;
+		if (N > 0) {
+			for (int k = bits; k >= 0; k--) {
+				for (int v = 0; v < V; v++)
+					p[v] *= 2;
+				phaseCost = new long[g.E()];
+				for (int e = 0; e < g.E(); e++)
+					phaseCost[e] = -Math.floorDiv(-cost[e], 1L << k);
+				phases++;
+				if (!phase())
+					return;
+			}
+		}
+		distances(s);
+	}
+
+	// the weights of g times the least power of ten that makes all of them
+	// integers
+	private long[] integerCosts(CompactDigraph g) {
+		scale = 1.0;
+		for (int digits = 0; digits <= MAX_DIGITS; digits++, scale *= 10) {
+			long[] c = new long[g.E()];
+			boolean whole = true;
+			for (int e = 0; e < g.E() && whole; e++) {
+				double x = g.weight(e) * scale;
+				if (Math.abs(x) >= 0x1p62)
+					throw new IllegalArgumentException("weight " + g.weight(e)
+							+ " too large for the goldberg solver");
+				c[e] = Math.round(x);
+				whole = Math.abs(x - c[e]) <= 1e-9 * Math.max(1.0, Math.abs(x));
+			}
+			if (whole) {
+				long most = 0;
+				for (int e = 0; e < g.E(); e++)
+					most = Math.max(most, Math.abs(c[e]));
+				if (most > Long.MAX_VALUE / 4 / Math.max(1, V))
+					throw new IllegalArgumentException(
+							"weights too large for the goldberg solver");
+				return c;
+			}
+		}
+		throw new IllegalArgumentException("the goldberg solver needs weights"
+				+ " with at most " + MAX_DIGITS + " decimal digits");
+	}
+
+	// reduced cost of edge e in the current phase
+	private long reduced(int e) {
+		return phaseCost[e] + p[g.from(e)] - p[g.to(e)];
+	}
+
+	// lowers potentials until no reduced cost is negative; returns false if
+	// a negative cycle was found instead
+	private boolean phase() {
+		while (true) {
+			// admissible edges, with their reduced costs as weights
+			int[] first = aFirst;
+			java.util.Arrays.fill(first, 0);
+			int negative = 0;
+			for (int e = 0; e < g.E(); e++) {
+				long r = reduced(e);
+				if (r <= 0) {
+					first[g.from(e) + 1]++;
+					if (r < 0)
+						negative++;
+				}
+			}
+			if (negative == 0)
+				return true;
+			steps++;
+			for (int v = 0; v < V; v++)
+				first[v + 1] += first[v];
+			int n = 0;
+			for (int e = 0; e < g.E(); e++) {
+				long r = reduced(e);
+				if (r <= 0) {
+					aFrom[n] = g.from(e);
+					aTo[n] = g.to(e);
+					aWeight[n] = r;
+					aOrigin[n++] = e;
+				}
+			}
+			admissible = new CompactDigraph(first, aFrom, aTo, aWeight, aOrigin);
+			scc = new CompactSCC(admissible);
+
+			// a -1 edge inside a component closes a negative cycle; otherwise
+			// find the layers of the components in topological order
+			int C = scc.count();
+			for (int c = 0; c < C; c++) {
+				d[c] = 0;
+				parent[c] = -1;
+			}
+			for (int c = 0; c < C; c++) {
+				for (int i = 0; i < scc.size(c); i++) {
+					int v = scc.member(c, i);
+					for (int a = admissible.begin(v); a < admissible.end(v); a++) {
+						int c2 = scc.id(admissible.to(a));
+						int r = (int) admissible.weight(a);
+						if (c2 == c) {
+							if (r < 0) {
+								Queue<Integer> path = new Queue<Integer>();
+								path.enqueue(a);
+								componentPath(admissible.to(a), v, path);
+								negativeCycle(path);
+								return false;
+							}
+						} else if (d[c] + r < d[c2]) {
+							d[c2] = d[c] + r;
+							parent[c2] = a;
+						}
+					}
+				}
+			}
+			int depth = 0, deepest = 0;
+			for (int c = 0; c < C; c++) {
+				if (-d[c] > depth) {
+					depth = -d[c];
+					deepest = c;
+				}
+			}
+			for (int i = 0; i <= depth; i++)
+				count[i] = 0;
+			for (int a = 0; a < n; a++)
+				if (admissible.weight(a) < 0)
+					count[-d[scc.id(admissible.to(a))]]++;
+			int layer = 1;
+			for (int i = 2; i <= depth; i++)
+				if (count[i] > count[layer])
+					layer = i;
+
+			// try every vertex at once first: lowered by its own depth, and
+			// by the closure of that, it usually leaves few -1 edges. It is
+			// kept only if it does at least as well as the two steps below.
+			for (int v = 0; v < V; v++)
+				demand[v] = -d[scc.id(v)];
+			closure(depth, false);
+			int fixed = 0;
+			for (int a = 0; a < n; a++)
+				if (admissible.weight(a) < 0
+						&& delta[admissible.to(a)] > delta[admissible.from(a)])
+					fixed++;
+			if (fixed >= Math.max(count[layer], depth)) {
+				for (int v = 0; v < V; v++)
+					p[v] -= delta[v];
+			} else if (count[layer] >= depth) {
+				// cut: lower every vertex at or below the layer by one
+				for (int v = 0; v < V; v++)
+					if (-d[scc.id(v)] >= layer)
+						p[v]--;
+			} else {
+				// lower the chain of components that ends at the deepest one
+				java.util.Arrays.fill(demand, -1);
+				for (int c = deepest;; c = scc.id(admissible.from(parent[c]))) {
+					for (int i = 0; i < scc.size(c); i++)
+						demand[scc.member(c, i)] = -d[c];
+					if (parent[c] == -1)
+						break;
+				}
+				if (!closure(depth, true))
+					return false;
+				for (int v = 0; v < V; v++)
+					p[v] -= delta[v];
+			}
+		}
+	}
+
+	// the least delta[w] >= demand[w] with delta[w] >= delta[v] - max(r(v,w),
+	// 0) for every edge v->w, found in buckets from the highest value down;
+	// lowering the potentials by delta makes no reduced cost below -1, and
+	// none below 0 that was not already. For a chain (demands -d along it,
+	// -1 elsewhere) a chain vertex raised above its demand proves a negative
+	// cycle, which is kept and false returned.
+	private boolean closure(int depth, boolean chain) {
+		java.util.Arrays.fill(head, 0, depth + 1, -1);
+		int items = 0;
+		for (int v = 0; v < V; v++) {
+			raisedBy[v] = -1;
+			done[v] = false;
+			delta[v] = Math.max(demand[v], 0);
+			if (delta[v] > 0) {
+				item[items] = v;
+				next[items] = head[delta[v]];
+				head[delta[v]] = items++;
+			}
+		}
+		for (int b = depth; b > 0; b--) {
+			while (head[b] != -1) {
+				int v = item[head[b]];
+				head[b] = next[head[b]];
+				if (done[v] || delta[v] != b)
+					continue;
+				done[v] = true;
+				for (int e = g.begin(v); e < g.end(v); e++) {
+					int w = g.to(e);
+					long x = b - Math.max(reduced(e), 0);
+					if (x <= delta[w])
+						continue;
+					if (chain && demand[w] >= 0) {
+						// the closure path back to w and the chain close a
+						// negative cycle
+						Queue<Integer> path = new Queue<Integer>();
+						chainPath(w, path, e);
+						negativeCycle(path);
+						return false;
+					}
+					delta[w] = (int) x;
+					raisedBy[w] = e;
+					item[items] = w;
+					next[items] = head[delta[w]];
+					head[delta[w]] = items++;
+				}
+			}
+		}
+		return true;
+	}
+
+	// the negative cycle found when chain vertex w was raised by edge e: the
+	// closure edges from a chain vertex x to w, then the chain from w back to
+	// x; edges of g go on path, admissible edges are translated
+	private void chainPath(int w, Queue<Integer> path, int e) {
+		Stack<Integer> closure = new Stack<Integer>();
+		closure.push(e);
+		int x = g.from(e);
+		while (raisedBy[x] != -1) {
+			closure.push(raisedBy[x]);
+			x = g.from(raisedBy[x]);
+		}
+		Queue<Integer> chain = new Queue<Integer>();
+		// chain edges from the component of w down to the component of x
+		Stack<Integer> links = new Stack<Integer>();
+		for (int c = scc.id(x); c != scc.id(w); c = scc.id(admissible
+				.from(parent[c])))
+			links.push(parent[c]);
+		int at = w;
+		for (int a : links) {
+			componentPath(at, admissible.from(a), chain);
+			chain.enqueue(a);
+			at = admissible.to(a);
+		}
+		componentPath(at, x, chain);
+		for (int a : chain)
+			path.enqueue(a);
+		// closure edges are edges of g; mark them by ~e so they are told apart
+		for (int c : closure)
+			path.enqueue(~c);
+	}
+
+	// admissible edges of a path from v to w inside their component, found
+	// by breadth-first search
+	private void componentPath(int v, int w, Queue<Integer> path) {
+		if (v == w)
+			return;
+		int c = scc.id(v);
+		int[] edgeTo = new int[V];
+		java.util.Arrays.fill(edgeTo, -1);
+		Queue<Integer> queue = new Queue<Integer>();
+		queue.enqueue(v);
+		boolean[] marked = new boolean[V];
+		marked[v] = true;
+		while (!queue.isEmpty() && !marked[w]) {
+			int u = queue.dequeue();
+			for (int a = admissible.begin(u); a < admissible.end(u); a++) {
+				int x = admissible.to(a);
+				if (!marked[x] && scc.id(x) == c) {
+					marked[x] = true;
+					edgeTo[x] = a;
+					queue.enqueue(x);
+				}
+			}
+		}
+		Stack<Integer> reverse = new Stack<Integer>();
+		for (int x = w; x != v; x = admissible.from(edgeTo[x]))
+			reverse.push(edgeTo[x]);
+		for (int a : reverse)
+			path.enqueue(a);
+	}
+
+	// keeps the cycle made of the given edges: admissible edges, or ~e for
+	// edge e of g
+	private void negativeCycle(Queue<Integer> path) {
+		Stack<DirectedEdge> reverse = new Stack<DirectedEdge>();
+		for (int a : path)
+			reverse.push(g.edge(a < 0 ? ~a : admissible.origin(a)));
+		cycle = new Stack<DirectedEdge>();
+		for (DirectedEdge e : reverse)
+			cycle.push(e);
+	}
+
+	// distances from s: Dijkstra on the reduced costs, summed in double along
+	// the tree, then relaxed in double until no edge can improve
+	private void distances(int s) {
+		distTo = new double[V];
+		int[] edgeTo = new int[V];
+		long[] dist = new long[V];
+		for (int v = 0; v < V; v++) {
+			distTo[v] = Double.POSITIVE_INFINITY;
+			dist[v] = Long.MAX_VALUE;
+			edgeTo[v] = -1;
+		}
+		dist[s] = 0;
+		distTo[s] = 0.0;
+		IndexMinPQ<Long> pq = new IndexMinPQ<Long>(V);
+		pq.insert(s, 0L);
+		while (!pq.isEmpty()) {
+			int v = pq.delMin();
+			if (edgeTo[v] != -1)
+				distTo[v] = distTo[g.from(edgeTo[v])] + g.weight(edgeTo[v]);
+			for (int e = g.begin(v); e < g.end(v); e++) {
+				int w = g.to(e);
+				long x = dist[v] + cost[e] + p[v] - p[w];
+				if (x < dist[w]) {
+					dist[w] = x;
+					edgeTo[w] = e;
+					if (pq.contains(w))
+						pq.decreaseKey(w, x);
+					else
+						pq.insert(w, x);
+				}
+			}
+		}
+
+		// rounding may leave distTo[w] > distTo[v] + weight by an ulp
+		int[] queue = new int[V];
+		boolean[] onQueue = new boolean[V];
+		int head = 0, size = 0;
+		for (int v = 0; v < V; v++) {
+			if (distTo[v] < Double.POSITIVE_INFINITY) {
+				queue[size++] = v;
+				onQueue[v] = true;
+			}
+		}
+		while (size > 0) {
+			int v = queue[head];
+			head = (head + 1) % V;
+			size--;
+			onQueue[v] = false;
+			for (int e = g.begin(v); e < g.end(v); e++) {
+				int w = g.to(e);
+				if (distTo[w] > distTo[v] + g.weight(e)) {
+					distTo[w] = distTo[v] + g.weight(e);
+					if (!onQueue[w]) {
+						queue[(head + size++) % V] = w;
+						onQueue[w] = true;
+					}
+				}
+			}
+		}
+	}
+
+	public boolean hasNegativeCycle() {
+		return cycle != null;
+	}
+
+	public Iterable<DirectedEdge> negativeCycle() {
+		return cycle;
+	}
+
+	public boolean hasPathTo(int v) {
+		return distTo[v] < Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * @throws UnsupportedOperationException
+	 *             if there is a negative cost cycle
+	 */
+	public double distTo(int v) {
+		if (hasNegativeCycle())
+			throw new UnsupportedOperationException(
+					"Negative cost cycle exists");
+		return distTo[v];
+	}
+
+	// feasible potential of v: weight times scale + potential(v) -
+	// potential(w) >= 0 for every edge v->w
+	public long potential(int v) {
+		return p[v];
+	}
+
+	// the weights were multiplied by this to make them integers
+	public double scale() {
+		return scale;
+	}
+
+	// number of scaling phases
+	public int phases() {
+		return phases;
+	}
+
+	// number of cut or chain steps over all phases
+	public int steps() {
+		return steps;
+	}
+}
@@ -0,0 +1,71 @@
+/**
+ * GraphSnapshot is the graph G** frozen for many shortest path queries,
+ * possibly from several threads at once. Its edges are checked for negative
+ * weights once, when it is made, instead of by every search, and every
+ * thread that queries it gets its own SnapshotQuery, whose arrays are made
+ * once and reused by all its queries. The CompactDigraph is shared, not
+ * copied; it is never changed once it is built.
+ *
+ * @author SephyZhou
+ *
+ */
+public final class GraphSnapshot {
+	private final CompactDigraph g;
+	private final ThreadLocal<SnapshotQuery> scratch = new ThreadLocal<SnapshotQuery>() {
+		protected SnapshotQuery initialValue() {
+			return new SnapshotQuery(g);
+		}
+	};
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if an edge has negative weight
+	 */
+	public GraphSnapshot(CompactDigraph g) {
+		for (int e = 0; e < g.E(); e++) {
+			if (g.weight(e) < 0)
+				throw new IllegalArgumentException("edge " + g.edge(e)
+						+ " has negative weight");
+		}
+		g.topologicalOrder(); // found here, before the threads read it
+		this.g = g;
+	}
+
+	// the graph
+	public CompactDigraph graph() {
+		return g;
+	}
+
+	/**
+	 * Searches the graph from <tt>s</tt> with the scratch space of the
+	 * calling thread. The result is valid until the same thread makes its
+	 * next query.
+	 */
+	public ShortestPaths shortestPaths(int s) {
+		SnapshotQuery query = scratch.get();
+		query.search(s);
+		return query;
+	}
+
+	/**
+	 * Searches from <tt>s</tt> like shortestPaths(s), but stops once
+	 * <tt>count</tt> of the vertices marked in <tt>target</tt> are settled;
+	 * the distances of those are final, the others may not be.
+	 */
+	public ShortestPaths shortestPaths(int s, boolean[] target, int count) {
+		SnapshotQuery query = scratch.get();
+		query.search(s, target, count, Double.POSITIVE_INFINITY);
+		return query;
+	}
+
+	/**
+	 * Searches from <tt>s</tt> only as far as <tt>limit</tt>: every vertex
+	 * at distance at most <tt>limit</tt> is among the vertices the query
+	 * settled, with its final distance.
+	 */
+	public SnapshotQuery within(int s, double limit) {
+		SnapshotQuery query = scratch.get();
+		query.search(s, null, 0, limit);
+		return query;
+	}
+}
@@ -0,0 +1,100 @@
+import java.util.NoSuchElementException;
+
+/**
+ * IndexMinHeap is an indexed binary heap of vertices keyed by double
+ * distances. It makes the same moves as <tt>IndexMinPQ&lt;Double&gt;</tt>, so
+ * vertices with equal keys leave it in the same order, but it keeps its keys
+ * unboxed and can be emptied and used again without allocating.
+ *
+ * @author SephyZhou
+ *
+ */
+public class IndexMinHeap {
+	private final int[] pq; // binary heap using 1-based indexing
+	private final int[] qp; // inverse of pq: qp[pq[i]] = pq[qp[i]] = i, -1 if
+							// not on the heap
+	private final double[] keys; // keys[i] = priority of i
+	private int n; // number of elements on the heap
+
+	public IndexMinHeap(int capacity) {
+		pq = new int[capacity + 1];
+		qp = new int[capacity];
+		keys = new double[capacity];
+		for (int i = 0; i < capacity; i++)
+			qp[i] = -1;
+	}
+
+	public boolean isEmpty() {
+		return n == 0;
+	}
+
+	public boolean contains(int i) {
+		return qp[i] != -1;
+	}
+
+	public void insert(int i, double key) {
+		n++;
+		qp[i] = n;
+		pq[n] = i;
+		keys[i] = key;
+		swim(n);
+	}
+
+	// lowers the key of i, which is on the heap
+	public void decreaseKey(int i, double key) {
+		keys[i] = key;
+		swim(qp[i]);
+	}
+
+	/**
+	 * @throws NoSuchElementException
+	 *             if the heap is empty
+	 */
+	public int delMin() {
+		if (n == 0)
+			throw new NoSuchElementException("Priority queue underflow");
+		int min = pq[1];
+		exch(1, n--);
+		sink(1);
+		qp[min] = -1;
+		return min;
+	}
+
+	// takes off whatever is left, in time proportional to its number
+	public void clear() {
+		for (int i = 1; i <= n; i++)
+			qp[pq[i]] = -1;
+		n = 0;
+	}
+
+	private boolean greater(int i, int j) {
+		return Double.compare(keys[pq[i]], keys[pq[j]]) > 0;
+	}
+
+	private void exch(int i, int j) {
+		int swap = pq[i];
+		pq[i] = pq[j];
+		pq[j] = swap;
+		qp[pq[i]] = i;
+		qp[pq[j]] = j;
+	}
+
+	private void swim(int k) {
+		while (k > 1 && greater(k / 2, k)) {
+			exch(k, k / 2);
+			k = k / 2;
+		}
+	}
+
+	private void sink(int k) {
+		while (2 * k <= n) {
+			int j = 2 * k;
+			if (j < n && greater(j, j + 1))
+				j++;
+			if (!greater(k, j))
+				break;
+			exch(k, j);
+			k = j;
+		}
+	}
+}
@@ -0,0 +1,84 @@
+import java.util.NoSuchElementException;
+
+/**
+ * IntDeque is a double-ended queue of ints kept in a ring buffer, which
+ * doubles when it is full. Unlike <tt>Queue&lt;Integer&gt;</tt> it boxes
+ * nothing and allocates nothing once it has grown to its working size.
+ *
+ * @author SephyZhou
+ *
+ */
+public class IntDeque {
+	private int[] a; // the items are a[first], a[first+1], ... (mod a.length)
+	private int first;
+	private int n;
+
+	// an empty deque
+	public IntDeque() {
+		this(16);
+	}
+
+	// an empty deque with room for capacity items before it grows
+	public IntDeque(int capacity) {
+		a = new int[Math.max(capacity, 1)];
+	}
+
+	public boolean isEmpty() {
+		return n == 0;
+	}
+
+	public int size() {
+		return n;
+	}
+
+	public void addFirst(int x) {
+		if (n == a.length)
+			grow();
+		first = (first - 1 + a.length) % a.length;
+		a[first] = x;
+		n++;
+	}
+
+	public void addLast(int x) {
+		if (n == a.length)
+			grow();
+		a[(first + n) % a.length] = x;
+		n++;
+	}
+
+	/**
+	 * @throws NoSuchElementException
+	 *             if the deque is empty
+	 */
+	public int peekFirst() {
+		if (n == 0)
+			throw new NoSuchElementException("Deque underflow");
+		return a[first];
+	}
+
+	/**
+	 * @throws NoSuchElementException
+	 *             if the deque is empty
+	 */
+	public int removeFirst() {
+		if (n == 0)
+			throw new NoSuchElementException("Deque underflow");
+		int x = a[first];
+		first = (first + 1) % a.length;
+		n--;
+		return x;
+	}
+
+	public void clear() {
+		first = 0;
+		n = 0;
+	}
+
+	private void grow() {
+		int[] b = new int[2 * a.length];
+		for (int i = 0; i < n; i++)
+			b[i] = a[(first + i) % a.length];
+		a = b;
+		first = 0;
+	}
+}
@@ -0,0 +1,347 @@
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * KShortestPaths finds the <tt>k</tt> shortest paths without repeated
+ * vertices from <tt>s</tt> to <tt>t</tt> with Yen's algorithm, on the
+ * reweighted graph G**. Reweighting adds <em>h(s) - h(t)</em> to every
+ * <tt>s-t</tt> path alike, so the paths are ranked the same on G** as on G,
+ * and every search runs on weights that are not negative.
+ * <p>
+ * Once a path is found, every vertex but the last of it is a spur vertex:
+ * the path is followed up to it (the root), the next edge of every path
+ * found so far with the same root is blocked, as are the vertices of the
+ * root before it, and the shortest path from the spur vertex to <tt>t</tt>
+ * in what is left (a Dijkstra search like the one of SnapshotQuery that
+ * stops at <tt>t</tt>) completes a candidate. The searches of the spur
+ * vertices are independent, so they are spread over <tt>threads</tt>
+ * threads, each with scratch space made once and reused by all its
+ * searches. The shortest candidate is the next path; candidates of equal
+ * length are taken in order of their edges. The first path is the one
+ * ApplyDijkstra finds.
+ * <p>
+ * The paths are reported in the weights of G, recovered through the vertex
+ * weights of ApplyBellmanFord.
+ *
+ * java KShortestPaths s t k [-threads n] &lt; output of ApplyBellmanFord
+ *
+ * @author SephyZhou
+ *
+ */
+public class KShortestPaths {
+	private final CompactDigraph g;
+	private final double[] pointWeight;
+	private final int threads;
+	private final ThreadLocal<Spur> scratch = new ThreadLocal<Spur>() {
+		protected Spur initialValue() {
+			return new Spur();
+		}
+	};
+
+	/**
+	 * A path from <tt>s</tt> to <tt>t</tt>: its edges in G** and its length
+	 * in G.
+	 */
+	public class Path {
+		private final int[] edges; // indices of the edges in g
+		private final double length;
+		private final int s;
+
+		Path(int s, int[] edges) {
+			this.s = s;
+			this.edges = edges;
+			double length = 0.0;
+			for (int e : edges)
+				length += weight(e);
+			this.length = length;
+		}
+
+		// length of the path in G
+		public double length() {
+			return length;
+		}
+
+		// number of edges
+		public int size() {
+			return edges.length;
+		}
+
+		// the edges from s on, with their weights in G
+		public Iterable<DirectedEdge> edges() {
+			List<DirectedEdge> list = new ArrayList<DirectedEdge>();
+			for (int e : edges)
+				list.add(new DirectedEdge(g.from(e), g.to(e), weight(e)));
+			return list;
+		}
+
+		// a line like the ones of ApplyDijkstraAllPairs
+		public String toString() {
+			StringBuilder out = new StringBuilder();
+			Formatter f = new Formatter(out, Locale.US);
+			int t = edges.length == 0 ? s : g.to(edges[edges.length - 1]);
+			if (length < 0)
+				f.format("%d to %d (%.2f)  ", s, t, length);
+			else
+				f.format("%d to %d ( %.2f)  ", s, t, length);
+			for (int e : edges) {
+				out.append(g.from(e)).append("->").append(g.to(e)).append(' ');
+				if (weight(e) < 0)
+					f.format("%.2f\t", weight(e));
+				else
+					f.format(" %.2f\t", weight(e));
+			}
+			return out.toString();
+		}
+	}
+
+	// a path not taken yet; ordered by length in G**, then by its edges
+	private static class Candidate implements Comparable<Candidate> {
+		final int[] edges;
+		final double length;
+
+		Candidate(int[] edges, double length) {
+			this.edges = edges;
+			this.length = length;
+		}
+
+		public int compareTo(Candidate that) {
+			int c = Double.compare(length, that.length);
+			for (int i = 0; c == 0 && i < Math.min(edges.length,
+					that.edges.length); i++)
+				c = edges[i] - that.edges[i];
+			return c != 0 ? c : edges.length - that.edges.length;
+		}
+	}
+
+	// the scratch space of one thread: a Dijkstra search that avoids the
+	// vertices and edges blocked for it, everything stamped with the number
+	// of the search
+	private class Spur {
+		final double[] distTo = new double[g.V()];
+		final int[] edgeTo = new int[g.V()];
+		final int[] stamp = new int[g.V()];
+		final int[] blockedVertex = new int[g.V()];
+		final int[] blockedEdge = new int[g.E()];
+		final IndexMinHeap pq = new IndexMinHeap(g.V());
+		int query;
+
+		// starts a new search, unblocking everything
+		void next() {
+			if (++query == Integer.MAX_VALUE) {
+				for (int v = 0; v < g.V(); v++)
+					stamp[v] = blockedVertex[v] = 0;
+				for (int e = 0; e < g.E(); e++)
+					blockedEdge[e] = 0;
+				query = 1;
+			}
+		}
+
+		// edges of a shortest u->t path of the current search, or null
+		int[] search(int u, int t) {
+			pq.clear();
+			distTo[u] = 0.0;
+			edgeTo[u] = -1;
+			stamp[u] = query;
+			pq.insert(u, 0.0);
+			while (!pq.isEmpty()) {
+				int v = pq.delMin();
+				if (v == t)
+					break;
+				for (int e = g.begin(v); e < g.end(v); e++) {
+					int w = g.to(e);
+					if (blockedEdge[e] == query || blockedVertex[w] == query)
+						continue;
+					double d = distTo[v] + g.weight(e);
+					if (stamp[w] != query || distTo[w] > d) {
+						distTo[w] = d;
+						edgeTo[w] = e;
+						stamp[w] = query;
+						if (pq.contains(w))
+							pq.decreaseKey(w, d);
+						else
+							pq.insert(w, d);
+					}
+				}
+			}
+			if (stamp[t] != query)
+				return null;
+			int n = 0;
+			for (int v = t; v != u; v = g.from(edgeTo[v]))
+				n++;
+			int[] path = new int[n];
+			for (int v = t; v != u; v = g.from(edgeTo[v]))
+				path[--n] = edgeTo[v];
+			return path;
+		}
+	}
+
+	/**
+	 * @param g
+	 *            the reweighted graph G**
+	 * @param pointWeight
+	 *            the vertex weights it was reweighted with
+	 * @param threads
+	 *            the number of threads the spur searches are spread over
+	 * @throws IllegalArgumentException
+	 *             if an edge of <tt>g</tt> has negative weight
+	 */
+	public KShortestPaths(CompactDigraph g, double[] pointWeight, int threads) {
+		for (int e = 0; e < g.E(); e++) {
+			if (g.weight(e) < 0)
+				throw new IllegalArgumentException("edge " + g.edge(e)
+						+ " has negative weight");
+		}
+		this.g = g;
+		this.pointWeight = pointWeight;
+		this.threads = Math.max(threads, 1);
+	}
+
+	// weight of edge e in G
+	private double weight(int e) {
+		return g.weight(e) - pointWeight[g.from(e)] + pointWeight[g.to(e)];
+	}
+
+	/**
+	 * Returns at most <tt>k</tt> shortest paths from <tt>s</tt> to
+	 * <tt>t</tt> without repeated vertices, shortest first; fewer if there
+	 * are no more.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 *             if <tt>s</tt> or <tt>t</tt> is not a vertex
+	 */
+	public List<Path> paths(int s, final int t, int k) {
+		validate(s);
+		validate(t);
+		List<Path> found = new ArrayList<Path>();
+		Spur spur = scratch.get();
+		spur.next();
+		int[] first = spur.search(s, t);
+		if (first == null || k < 1)
+			return found;
+
+		final List<int[]> taken = new ArrayList<int[]>();
+		TreeSet<Candidate> candidates = new TreeSet<Candidate>();
+		taken.add(first);
+		ExecutorService pool = threads > 1 ? Executors
+				.newFixedThreadPool(threads) : null;
+		try {
+			while (taken.size() < k) {
+				final int[] last = taken.get(taken.size() - 1);
+				final int[] vertex = vertices(s, last);
+				List<Callable<Candidate>> tasks = new ArrayList<Callable<Candidate>>();
+				for (int i = 0; i < last.length; i++) {
+					final int root = i;
+					tasks.add(new Callable<Candidate>() {
+						public Candidate call() {
+							return spur(last, vertex, root, t, taken);
+						}
+					});
+				}
+				for (Candidate c : run(pool, tasks))
+					if (c != null)
+						candidates.add(c);
+				if (candidates.isEmpty())
+					break;
+				taken.add(candidates.pollFirst().edges);
+			}
+		} finally {
+			if (pool != null)
+				pool.shutdown();
+		}
+		for (int[] edges : taken)
+			found.add(new Path(s, edges));
+		return found;
+	}
+
+	// the candidate through the spur vertex vertex[root] of the path last,
+	// or null if t cannot be reached from there
+	private Candidate spur(int[] last, int[] vertex, int root, int t,
+			List<int[]> taken) {
+		Spur spur = scratch.get();
+		spur.next();
+		for (int i = 0; i < root; i++)
+			spur.blockedVertex[vertex[i]] = spur.query;
+		for (int[] path : taken) {
+			if (path.length <= root)
+				continue;
+			boolean same = true;
+			for (int i = 0; i < root && same; i++)
+				same = path[i] == last[i];
+			if (same)
+				spur.blockedEdge[path[root]] = spur.query;
+		}
+		int[] rest = spur.search(vertex[root], t);
+		if (rest == null)
+			return null;
+		int[] edges = new int[root + rest.length];
+		System.arraycopy(last, 0, edges, 0, root);
+		System.arraycopy(rest, 0, edges, root, rest.length);
+		double length = 0.0;
+		for (int e : edges)
+			length += g.weight(e);
+		return new Candidate(edges, length);
+	}
+
+	// the results of the tasks, in order; on the calling thread if there is
+	// no pool
+	private static <T> List<T> run(ExecutorService pool,
+			List<Callable<T>> tasks) {
+		List<T> results = new ArrayList<T>();
+		try {
+			if (pool == null) {
+				for (Callable<T> task : tasks)
+					results.add(task.call());
+			} else {
+				for (Future<T> f : pool.invokeAll(tasks))
+					results.add(f.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("spur searches interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+		return results;
+	}
+
+	// the vertices of a path from s, s first
+	private int[] vertices(int s, int[] edges) {
+		int[] vertex = new int[edges.length + 1];
+		vertex[0] = s;
+		for (int i = 0; i < edges.length; i++)
+			vertex[i + 1] = g.to(edges[i]);
+		return vertex;
+	}
+
+	private void validate(int v) {
+		if (v < 0 || v >= g.V())
+			throw new IndexOutOfBoundsException("vertex " + v
+					+ " is not between 0 and " + (g.V() - 1));
+	}
+
+	public static void main(String[] args) {
+		int s = Integer.parseInt(args[0]);
+		int t = Integer.parseInt(args[1]);
+		int k = Integer.parseInt(args[2]);
+		int threads = Runtime.getRuntime().availableProcessors();
+		for (int i = 3; i < args.length; i++)
+			if (args[i].equals("-threads"))
+				threads = Integer.parseInt(args[++i]);
+		ApplyDijkstraAllPairs.readGraphFromBF();
+		CompactDigraph G = new CompactDigraph();
+		KShortestPaths yen = new KShortestPaths(G,
+				ApplyDijkstraAllPairs.pointWeight, threads);
+		for (Path p : yen.paths(s, t, k))
+			StdOut.println(p);
+	}
+}
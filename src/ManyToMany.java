@@ -0,0 +1,227 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Formatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * ManyToMany computes the distances in the original graph G from a set of
+ * sources to a set of targets, without the rows of ApplyDijkstraAllPairs for
+ * every vertex. Every source is searched on G** (GraphSnapshot) only until
+ * the targets it can reach are settled: how many there are is known from the
+ * ReachabilityIndex of G**, so a search never runs on to the end of the
+ * graph looking for a target it cannot reach. The length of a path is summed
+ * from the weights of G along the edges of the search tree, like the rows of
+ * ApplyDijkstraAllPairs, so the two agree. The sources are split among
+ * <tt>threads</tt> threads, each with its own scratch space, including the
+ * one in which the ReachabilityIndex answers it, so no thread waits for
+ * another.
+ * <p>
+ * The result is one <tt>double[]</tt> of <em>|S| |T|</em> entries, the
+ * distance from <tt>sources[i]</tt> to <tt>targets[j]</tt> at <tt>i |T| +
+ * j</tt>, infinite if there is no path.
+ *
+ * java ManyToMany sources targets [-threads n] &lt; output of ApplyBellmanFord
+ *
+ * where <tt>sources</tt> and <tt>targets</tt> are files of vertex ids.
+ *
+ * @author SephyZhou
+ *
+ */
+public class ManyToMany {
+	private final CompactDigraph g;
+	private final double[] pointWeight;
+	private final GraphSnapshot snapshot;
+	private final ReachabilityIndex reach;
+
+	/**
+	 * @param g
+	 *            the reweighted graph G**
+	 * @param pointWeight
+	 *            the vertex weights it was reweighted with
+	 * @throws IllegalArgumentException
+	 *             if an edge of <tt>g</tt> has negative weight
+	 */
+	public ManyToMany(CompactDigraph g, double[] pointWeight) {
+		this.g = g;
+		this.pointWeight = pointWeight;
+		snapshot = new GraphSnapshot(g);
+		reach = new ReachabilityIndex(g);
+	}
+
+	// the scratch space of one thread: the targets of its current row and
+	// the lengths in G summed along the tree of its search, stamped like
+	// SnapshotQuery
+	private class Scratch {
+		final boolean[] target = new boolean[g.V()];
+		final double[] length = new double[g.V()];
+		final int[] stamp = new int[g.V()];
+		final int[] stack = new int[g.V()];
+		int query;
+
+		double length(ShortestPaths sp, int t) {
+			int k = 0, v = t;
+			while (stamp[v] != query) {
+				int e = sp.lastEdge(v);
+				if (e == -1) {
+					length[v] = 0.0;
+					stamp[v] = query;
+					break;
+				}
+				stack[k++] = v;
+				v = g.from(e);
+			}
+			while (k > 0) {
+				v = stack[--k];
+				int e = sp.lastEdge(v);
+				int u = g.from(e);
+				// the weight of the edge in G first, as tree() adds it
+				length[v] = length[u]
+						+ (g.weight(e) - pointWeight[u] + pointWeight[v]);
+				stamp[v] = query;
+			}
+			return length[t];
+		}
+	}
+
+	private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+		protected Scratch initialValue() {
+			return new Scratch();
+		}
+	};
+
+	/**
+	 * Returns the distances from every source to every target (see above).
+	 *
+	 * @throws IndexOutOfBoundsException
+	 *             if an id is not a vertex
+	 */
+	public double[] distances(final int[] sources, final int[] targets,
+			int threads) {
+		for (int s : sources)
+			validate(s);
+		for (int t : targets)
+			validate(t);
+		final double[] matrix = new double[sources.length * targets.length];
+		threads = Math.max(1, Math.min(threads, sources.length));
+		if (threads == 1) {
+			rows(sources, targets, 0, sources.length, matrix);
+			return matrix;
+		}
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int k = 0; k < threads; k++) {
+			final int lo = (int) ((long) sources.length * k / threads);
+			final int hi = (int) ((long) sources.length * (k + 1) / threads);
+			tasks.add(new Callable<Void>() {
+				public Void call() {
+					rows(sources, targets, lo, hi, matrix);
+					return null;
+				}
+			});
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			for (Future<Void> f : pool.invokeAll(tasks))
+				f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("many-to-many interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+		return matrix;
+	}
+
+	// the rows of sources[lo..hi)
+	private void rows(int[] sources, int[] targets, int lo, int hi,
+			double[] matrix) {
+		int T = targets.length;
+		for (int i = lo; i < hi; i++)
+			row(sources[i], targets, 0, T, matrix, i * T);
+	}
+
+	/**
+	 * Writes the distance from <tt>s</tt> to <tt>targets[j]</tt>, for
+	 * <tt>lo &lt;= j &lt; hi</tt>, to <tt>out[offset + j - lo]</tt>,
+	 * infinite if there is no path, with one search that stops once every
+	 * target <tt>s</tt> can reach is settled. Several threads may call it at
+	 * once; the ids are not checked.
+	 */
+	public void row(int s, int[] targets, int lo, int hi, double[] out,
+			int offset) {
+		Scratch scratch = this.scratch.get();
+		boolean[] target = scratch.target;
+		int count = 0;
+		BitSet reached = reach.targets(s); // this thread's own
+		for (int j = lo; j < hi; j++) {
+			int t = targets[j];
+			if (!target[t] && reached.get(t)) {
+				target[t] = true;
+				count++;
+			}
+		}
+		ShortestPaths sp = count == 0 ? null : snapshot.shortestPaths(s,
+				target, count);
+		scratch.query++;
+		for (int j = lo; j < hi; j++) {
+			int t = targets[j];
+			target[t] = false;
+			out[offset + j - lo] = sp != null && sp.hasPathTo(t) ? scratch
+					.length(sp, t) : Double.POSITIVE_INFINITY;
+		}
+	}
+
+	private void validate(int v) {
+		if (v < 0 || v >= g.V())
+			throw new IndexOutOfBoundsException("vertex " + v
+					+ " is not between 0 and " + (g.V() - 1));
+	}
+
+	// the vertex ids of a file
+	private static int[] readIds(String file) {
+		In in = new In(file);
+		int[] ids = in.readAllInts();
+		in.close();
+		return ids;
+	}
+
+	public static void main(String[] args) {
+		int threads = Runtime.getRuntime().availableProcessors();
+		for (int i = 2; i < args.length; i++)
+			if (args[i].equals("-threads"))
+				threads = Integer.parseInt(args[++i]);
+		int[] sources = readIds(args[0]);
+		int[] targets = readIds(args[1]);
+
+		ApplyDijkstraAllPairs.readGraphFromBF();
+		CompactDigraph G = new CompactDigraph();
+		double[] matrix = new ManyToMany(G, ApplyDijkstraAllPairs.pointWeight)
+				.distances(sources, targets, threads);
+
+		// a row per source, a column per target
+		StringBuilder out = new StringBuilder();
+		Formatter f = new Formatter(out, Locale.US);
+		for (int t : targets)
+			out.append('\t').append(t);
+		StdOut.println(out);
+		for (int i = 0; i < sources.length; i++) {
+			out.setLength(0);
+			out.append(sources[i]);
+			for (int j = 0; j < targets.length; j++) {
+				double d = matrix[i * targets.length + j];
+				if (d == Double.POSITIVE_INFINITY)
+					out.append("\tinf");
+				else
+					f.format("\t%.2f", d);
+			}
+			StdOut.println(out);
+		}
+	}
+}
@@ -0,0 +1,265 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * MinPlusAllPairs computes the distances between all pairs of vertices of
+ * G** by squaring its distance matrix in the (min, +) semiring, for dense
+ * graphs of a few thousand vertices (<tt>java ApplyDijkstraAllPairs -engine
+ * minplus [-threads n]</tt>). The matrix is one flat <tt>double[]</tt> of
+ * <em>V<sup>2</sup></em> entries (so <em>V</em> is at most 46340),
+ * starting from the lightest edge between every pair and 0 on the diagonal;
+ * after <em>m</em> squarings it holds the shortest paths of at most
+ * <em>2<sup>m</sup></em> edges, so <em>lg V</em> squarings (fewer if a
+ * squaring changes nothing) give every distance.
+ * <p>
+ * A squaring is cut into tiles of <tt>BLOCK</tt> rows by <tt>BLOCK</tt>
+ * columns, each computed by a fork-join task that runs through the middle
+ * index in blocks as well, so the rows it reads stay in cache; the innermost
+ * loop adds one entry to a row and keeps the smaller, a loop the compiler
+ * can vectorize. An entry of the diagonal that falls below 0 is a negative
+ * cycle; ApplyDijkstraAllPairs only ever hands it G**, whose weights are not
+ * negative, so there the check never fires.
+ * <p>
+ * The rows of ApplyDijkstraAllPairs need a path, not only a distance: the
+ * tree of a source is rebuilt from the edges that are tight for its row of
+ * the matrix (see tree()). The matrix sums its paths in another order than
+ * Dijkstra does, so an edge counts as tight within a relative
+ * <tt>EPSILON</tt>, and a vertex with more than one such edge into it,
+ * where Dijkstra's choice cannot be told from the matrix, leaves the row to
+ * Dijkstra.
+ *
+ * @author SephyZhou
+ *
+ */
+public class MinPlusAllPairs {
+	private static final int BLOCK = 64; // side of a tile
+	private static final double EPSILON = 1e-9; // relative slack of a tight
+													// edge
+
+	private static final int MAX_V = 46340; // largest n with n * n an int
+
+	private final CompactDigraph g;
+	private final int n;
+	private double[] dist; // dist[s * n + t] = distance of shortest s->t path
+	private int squarings;
+	private int negative = -1; // vertex on a negative cycle, -1 if none
+
+	// scratch space of tree()
+	private final int[] queue;
+	private final int[] seen;
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if <tt>g</tt> has more than 46340 vertices, whose matrix
+	 *             would not fit in one array
+	 */
+	public MinPlusAllPairs(CompactDigraph g, int threads) {
+		if (g.V() > MAX_V)
+			throw new IllegalArgumentException("-engine minplus takes at most "
+					+ MAX_V + " vertices, not " + g.V()
+					+ "; use -engine dijkstra");
+		this.g = g;
+		n = g.V();
+		queue = new int[n];
+		seen = new int[n];
+		dist = new double[n * n];
+		Arrays.fill(dist, Double.POSITIVE_INFINITY);
+		for (int v = 0; v < n; v++) {
+			dist[v * n + v] = 0.0;
+			for (int e = g.begin(v); e < g.end(v); e++) {
+				int i = v * n + g.to(e);
+				dist[i] = Math.min(dist[i], g.weight(e));
+			}
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(Math.max(threads, 1));
+		try {
+			double[] next = new double[n * n];
+			for (long length = 1; length < n; length *= 2) {
+				System.arraycopy(dist, 0, next, 0, dist.length);
+				Square square = new Square(dist, next, n);
+				pool.invoke(square);
+				double[] swap = dist;
+				dist = next;
+				next = swap;
+				squarings++;
+				for (int v = 0; v < n && negative == -1; v++)
+					if (dist[v * n + v] < 0)
+						negative = v;
+				if (negative != -1 || !square.changed())
+					break;
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * The tiles of one squaring: <tt>c = min(c, a * a)</tt>, where c starts as
+	 * a copy of a.
+	 */
+	private static class Square extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final double[] a, c;
+		private final int n;
+		private final List<Tile> tiles = new ArrayList<Tile>();
+
+		Square(double[] a, double[] c, int n) {
+			this.a = a;
+			this.c = c;
+			this.n = n;
+		}
+
+		protected void compute() {
+			for (int i = 0; i < n; i += BLOCK)
+				for (int j = 0; j < n; j += BLOCK)
+					tiles.add(new Tile(a, c, n, i, j));
+			invokeAll(tiles);
+		}
+
+		boolean changed() {
+			for (Tile t : tiles)
+				if (t.changed)
+					return true;
+			return false;
+		}
+	}
+
+	private static class Tile extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final double[] a, c;
+		private final int n, i0, j0;
+		boolean changed;
+
+		Tile(double[] a, double[] c, int n, int i0, int j0) {
+			this.a = a;
+			this.c = c;
+			this.n = n;
+			this.i0 = i0;
+			this.j0 = j0;
+		}
+
+		protected void compute() {
+			int i1 = Math.min(i0 + BLOCK, n), j1 = Math.min(j0 + BLOCK, n);
+			for (int k0 = 0; k0 < n; k0 += BLOCK) {
+				int k1 = Math.min(k0 + BLOCK, n);
+				for (int i = i0; i < i1; i++) {
+					int row = i * n;
+					for (int k = k0; k < k1; k++) {
+						double aik = a[row + k];
+						if (aik == Double.POSITIVE_INFINITY)
+							continue;
+						int krow = k * n;
+						for (int j = j0; j < j1; j++) {
+							double x = aik + a[krow + j];
+							if (x < c[row + j]) {
+								c[row + j] = x;
+								changed = true;
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	// the graph
+	public CompactDigraph graph() {
+		return g;
+	}
+
+	// number of squarings made
+	public int squarings() {
+		return squarings;
+	}
+
+	// is there a negative cycle?
+	public boolean hasNegativeCycle() {
+		return negative != -1;
+	}
+
+	// a negative cycle, found by ApplyBellmanFord from a vertex on the
+	// diagonal below 0; null if there is none
+	public Iterable<DirectedEdge> negativeCycle() {
+		if (negative == -1)
+			return null;
+		return new ApplyBellmanFord(g, negative).negativeCycle();
+	}
+
+	// length of the shortest path from s to t
+	public double distance(int s, int t) {
+		return dist[s * n + t];
+	}
+
+	/**
+	 * Fills in the shortest paths tree from <tt>s</tt> in the arrays of
+	 * ApplyDijkstraAllPairs.tree(), with the weights of G recovered through
+	 * <tt>pointWeight</tt>, when every reachable vertex but <tt>s</tt> has
+	 * exactly one tight edge into it: Dijkstra's tree is made of tight
+	 * edges, so it is then that one. Returns false, leaving the arrays
+	 * incomplete, otherwise: a vertex with no tight edge into it after
+	 * rounding, or with more than one, or parents that go round in a cycle.
+	 */
+	public boolean tree(int s, double[] pointWeight, int[] parent,
+			double[] length, double[] weight) {
+		int row = s * n;
+		for (int t = 0; t < n; t++) {
+			parent[t] = -1;
+			length[t] = Double.NaN;
+			weight[t] = 0.0;
+		}
+		int[] edgeTo = queue;
+		for (int t = 0; t < n; t++)
+			edgeTo[t] = -1;
+		for (int u = 0; u < n; u++) {
+			double du = dist[row + u];
+			if (du == Double.POSITIVE_INFINITY)
+				continue;
+			for (int e = g.begin(u); e < g.end(u); e++) {
+				int t = g.to(e);
+				if (t == s || !same(du + g.weight(e), dist[row + t]))
+					continue;
+				if (edgeTo[t] != -1)
+					return false; // which one Dijkstra takes is not known
+				edgeTo[t] = e;
+			}
+		}
+
+		// lengths in the weights of G, summed from s on
+		length[s] = 0.0;
+		for (int t = 0; t < n; t++) {
+			if (dist[row + t] == Double.POSITIVE_INFINITY) {
+				length[t] = Double.POSITIVE_INFINITY;
+			} else if (t != s && edgeTo[t] == -1) {
+				return false;
+			} else if (edgeTo[t] != -1) {
+				int e = edgeTo[t];
+				parent[t] = g.from(e);
+				weight[t] = g.weight(e) - pointWeight[g.from(e)]
+						+ pointWeight[t];
+			}
+		}
+		for (int t = 0; t < n; t++) {
+			// climb to a vertex whose length is known, then sum back down
+			int k = 0, v = t;
+			while (Double.isNaN(length[v])) {
+				if (k == n)
+					return false; // the parents go round in a cycle
+				seen[k++] = v;
+				v = parent[v];
+			}
+			while (k > 0) {
+				v = seen[--k];
+				length[v] = length[parent[v]] + weight[v];
+			}
+		}
+		return true;
+	}
+
+	private static boolean same(double a, double b) {
+		return Math.abs(a - b) <= EPSILON * Math.max(1.0, Math.abs(b));
+	}
+}
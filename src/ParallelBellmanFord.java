@@ -0,0 +1,160 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * ParallelBellmanFord computes the vertex weights of ApplyBellmanFord with
+ * rounds of Bellman-Ford spread over several threads (<tt>java
+ * ApplyBellmanFord s -solver parallel [-threads n]</tt>). Every round relaxes
+ * the edges out of the vertices lowered in the round before, split evenly
+ * among the threads; a distance is kept as the bits of its double in an
+ * <tt>AtomicLongArray</tt> and lowered by compare-and-set, so the threads
+ * take no locks. After round <em>k</em> every vertex with a shortest path of
+ * at most <em>k</em> edges has its distance, so a vertex still lowered in
+ * round <em>V</em> shows a negative cycle. That cycle is then found by
+ * ApplyBellmanFord, which reports the same cycle as the default solver.
+ *
+ * @author SephyZhou
+ *
+ */
+public class ParallelBellmanFord implements Potentials {
+	private static final int SEQUENTIAL = 512; // smaller rounds run on one
+												// thread
+
+	private final CompactDigraph g;
+	private final int threads;
+	private final AtomicLongArray dist; // bits of the tentative distances
+	private final AtomicIntegerArray mark; // round a vertex was last queued for
+	private final IntDeque[] lowered; // vertices lowered by every task
+	private double[] distTo; // distTo[v] = distance of shortest s->v path
+	private Iterable<DirectedEdge> cycle; // negative cycle (or null if no such
+											// cycle)
+	private int rounds; // number of rounds
+
+	public ParallelBellmanFord(CompactDigraph g, int s, int threads) {
+		this.g = g;
+		this.threads = Math.max(threads, 1);
+		int V = g.V();
+		dist = new AtomicLongArray(V);
+		mark = new AtomicIntegerArray(V);
+		lowered = new IntDeque[this.threads];
+		for (int t = 0; t < this.threads; t++)
+			lowered[t] = new IntDeque();
+		long infinity = Double.doubleToLongBits(Double.POSITIVE_INFINITY);
+		for (int v = 0; v < V; v++)
+			dist.set(v, infinity);
+		dist.set(s, Double.doubleToLongBits(0.0));
+
+		int[] frontier = new int[V];
+		frontier[0] = s;
+		int n = 1;
+		ExecutorService pool = Executors.newFixedThreadPool(this.threads);
+		try {
+			while (n > 0 && rounds < V) {
+				rounds++;
+				relax(pool, frontier, n);
+				n = 0;
+				for (IntDeque out : lowered)
+					while (!out.isEmpty())
+						frontier[n++] = out.removeFirst();
+			}
+		} finally {
+			pool.shutdown();
+		}
+
+		distTo = new double[V];
+		if (n > 0) {
+			ApplyBellmanFord sp = new ApplyBellmanFord(g, s);
+			cycle = sp.negativeCycle();
+			if (cycle == null)
+				for (int v = 0; v < V; v++)
+					distTo[v] = sp.distTo(v);
+			return;
+		}
+		for (int v = 0; v < V; v++)
+			distTo[v] = Double.longBitsToDouble(dist.get(v));
+	}
+
+	// relaxes the edges out of vertices[0..n), split among the threads unless
+	// there are few
+	private void relax(ExecutorService pool, final int[] vertices, int n) {
+		if (threads == 1 || n < SEQUENTIAL) {
+			relax(vertices, 0, n, lowered[0]);
+			return;
+		}
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int t = 0; t < threads; t++) {
+			final int lo = (int) ((long) n * t / threads);
+			final int hi = (int) ((long) n * (t + 1) / threads);
+			final IntDeque out = lowered[t];
+			tasks.add(new Callable<Void>() {
+				public Void call() {
+					relax(vertices, lo, hi, out);
+					return null;
+				}
+			});
+		}
+		try {
+			for (Future<Void> f : pool.invokeAll(tasks))
+				f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Bellman-Ford interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private void relax(int[] vertices, int lo, int hi, IntDeque out) {
+		for (int i = lo; i < hi; i++) {
+			int v = vertices[i];
+			double dv = Double.longBitsToDouble(dist.get(v));
+			for (int e = g.begin(v); e < g.end(v); e++) {
+				int w = g.to(e);
+				double x = dv + g.weight(e);
+				long old = dist.get(w);
+				while (x < Double.longBitsToDouble(old)
+						&& !dist.compareAndSet(w, old, Double.doubleToLongBits(x)))
+					old = dist.get(w);
+				// queue w once for the next round
+				if (x < Double.longBitsToDouble(old)
+						&& mark.getAndSet(w, rounds) != rounds)
+					out.addLast(w);
+			}
+		}
+	}
+
+	// number of rounds
+	public int rounds() {
+		return rounds;
+	}
+
+	public boolean hasNegativeCycle() {
+		return cycle != null;
+	}
+
+	public Iterable<DirectedEdge> negativeCycle() {
+		return cycle;
+	}
+
+	public boolean hasPathTo(int v) {
+		return distTo[v] < Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * @throws UnsupportedOperationException
+	 *             if there is a negative cost cycle
+	 */
+	public double distTo(int v) {
+		if (hasNegativeCycle())
+			throw new UnsupportedOperationException(
+					"Negative cost cycle exists");
+		return distTo[v];
+	}
+}
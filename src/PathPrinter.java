@@ -0,0 +1,98 @@
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.Formatter;
+import java.util.Locale;
+
+/**
+ * PathPrinter writes the lines of ApplyDijkstra and ApplyDijkstraAllPairs to
+ * standard output without creating objects per pair or per edge. As a
+ * PathVisitor it appends every edge of a path, <tt>from->to weight</tt> in
+ * the weights of G, to one line buffer that is reused for every line;
+ * numbers are appended as primitives by appendFixed2(), which prints what
+ * <tt>%.2f</tt> prints, and the buffer goes out through a reused
+ * <tt>char[]</tt>. Like StdOut it writes through a PrintWriter, which does
+ * not throw once the reader of standard output has gone away.
+ *
+ * @author SephyZhou
+ *
+ */
+public class PathPrinter implements PathVisitor {
+	private static final double LARGE = 1e9; // larger numbers go to Formatter
+
+	private final double[] pointWeight;
+	private final StringBuilder line = new StringBuilder();
+	private final PrintWriter out;
+	private char[] chars = new char[1 << 12];
+
+	/**
+	 * @param pointWeight
+	 *            the vertex weights the visited edges were reweighted with
+	 */
+	public PathPrinter(double[] pointWeight) {
+		this.pointWeight = pointWeight;
+		out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+				System.out, Charset.forName("UTF-8")), 1 << 16));
+	}
+
+	// appends the edge from->to, given with its weight in G**
+	public void visit(int from, int to, double weight) {
+		line.append(from).append("->").append(to).append(' ');
+		appendWeight(line, weight - pointWeight[from] + pointWeight[to]);
+	}
+
+	// the line being built
+	public StringBuilder line() {
+		return line;
+	}
+
+	// writes the line and starts the next one
+	public void print() {
+		int n = line.length();
+		if (n > chars.length)
+			chars = new char[Math.max(n, 2 * chars.length)];
+		line.getChars(0, n, chars, 0);
+		out.write(chars, 0, n);
+		line.setLength(0);
+	}
+
+	// writes what is left and flushes standard output
+	public void close() {
+		print();
+		out.flush();
+	}
+
+	// appends the weight of an edge as the rows print it: "%.2f\t" if it is
+	// negative, " %.2f\t" if not
+	static void appendWeight(StringBuilder out, double w) {
+		if (w >= 0)
+			out.append(' ');
+		appendFixed2(out, w);
+		out.append('\t');
+	}
+
+	/**
+	 * Appends <tt>x</tt> with two decimals exactly as
+	 * <tt>String.format(Locale.US, "%.2f", x)</tt> does. Formatter rounds the
+	 * shortest decimal that reads back as <tt>x</tt> half up, which only
+	 * differs from rounding <tt>100 x</tt> itself when that lies within
+	 * rounding error of a half; those few numbers, and very large ones, are
+	 * left to Formatter.
+	 */
+	static void appendFixed2(StringBuilder out, double x) {
+		double y = Math.abs(x) * 100;
+		double floor = Math.floor(y);
+		double frac = y - floor;
+		if (!(Math.abs(x) < LARGE) || Math.abs(frac - 0.5) < 1e-4) {
+			new Formatter(out, Locale.US).format("%.2f", x);
+			return;
+		}
+		long cents = (long) floor + (frac > 0.5 ? 1 : 0);
+		if (Double.compare(x, 0.0) < 0)
+			out.append('-');
+		out.append(cents / 100).append('.');
+		int c = (int) (cents % 100);
+		out.append((char) ('0' + c / 10)).append((char) ('0' + c % 10));
+	}
+}
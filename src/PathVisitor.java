@@ -0,0 +1,13 @@
+/**
+ * PathVisitor receives the edges of a shortest path one at a time, from the
+ * source to the target, as primitive values, so walking a path does not
+ * create any objects.
+ *
+ * @author SephyZhou
+ *
+ */
+public interface PathVisitor {
+
+	// called for every edge from->to of the path, in order
+	void visit(int from, int to, double weight);
+}
@@ -0,0 +1,164 @@
+/**
+ * PotentialBenchmark times the potential solvers of ApplyBellmanFord on
+ * generated graphs with integer weights and no negative cycle, and checks
+ * that every solver finds the same distances as the queue-based
+ * Bellman-Ford. The graphs are built so that every vertex has a hidden
+ * height <tt>h</tt> and an edge <tt>v->w</tt> weighs <tt>x + h(v) - h(w)</tt>
+ * for some <tt>x &ge; 0</tt>:
+ * <ul>
+ * <li><tt>chain</tt>: a path through the vertices in increasing order of
+ * number with <tt>x = 0</tt> and <tt>h</tt> growing along it, plus heavy
+ * edges back along it; Bellman-Ford takes the vertices off its queue against
+ * the direction of the path and corrects one more vertex per pass, its worst
+ * case;
+ * <li><tt>grid</tt>: a square grid with edges both ways and random
+ * <tt>x</tt>;
+ * <li><tt>random</tt>: <em>4V</em> random edges with random <tt>x</tt>.
+ * </ul>
+ * A second table compares the queue disciplines of Bellman-Ford
+ * (<tt>-queue</tt>) by time, passes and vertices scanned.
+ *
+ * java PotentialBenchmark [V ...]
+ *
+ * @author SephyZhou
+ *
+ */
+public class PotentialBenchmark {
+	private static final String[] SOLVERS = { "spfa", "scc", "goldberg",
+			"parallel" };
+	private static final String[] DISCIPLINES = { "fifo", "slf", "lll",
+			"slf-lll", "gr", "yen" };
+
+	// the graph G* of the given family with about V vertices
+	static CreateAuxiliaryGraph generate(String family, int V) {
+		if (family.equals("grid")) {
+			int n = (int) Math.sqrt(V);
+			V = n * n;
+		}
+		long[] h = new long[V];
+		for (int v = 0; v < V; v++)
+			h[v] = family.equals("chain") ? 10 * v : StdRandom
+					.uniform(1000 * V);
+		CreateAuxiliaryGraph G = new CreateAuxiliaryGraph(V + 1);
+		if (family.equals("chain")) {
+			for (int v = 0; v + 1 < V; v++) {
+				add(G, v, v + 1, 0, h);
+				add(G, v + 1, v, 1000, h);
+			}
+		} else if (family.equals("grid")) {
+			int n = (int) Math.sqrt(V);
+			for (int v = 0; v < V; v++) {
+				if (v % n + 1 < n) {
+					add(G, v, v + 1, StdRandom.uniform(100), h);
+					add(G, v + 1, v, StdRandom.uniform(100), h);
+				}
+				if (v + n < V) {
+					add(G, v, v + n, StdRandom.uniform(100), h);
+					add(G, v + n, v, StdRandom.uniform(100), h);
+				}
+			}
+		} else if (family.equals("random")) {
+			for (int i = 0; i < 4 * V; i++)
+				add(G, StdRandom.uniform(V), StdRandom.uniform(V),
+						StdRandom.uniform(100), h);
+		} else {
+			throw new IllegalArgumentException("unknown family " + family);
+		}
+		G.addFinalVertex();
+		return G;
+	}
+
+	private static void add(CreateAuxiliaryGraph G, int v, int w, long x,
+			long[] h) {
+		G.addEdge(new DirectedEdge(v, w, x + h[v] - h[w]));
+	}
+
+	private static final double SLOW = 1000; // ms after which larger sizes
+												// are skipped
+
+	// best of three runs of the solver, in milliseconds (one if it is slow);
+	// the first runs also warm up the compiler
+	private static double time(String solver, CompactDigraph g, int s) {
+		ApplyBellmanFord.solver = solver;
+		double best = Double.POSITIVE_INFINITY;
+		for (int run = 0; run < 3 && best > SLOW / 10; run++) {
+			long start = System.nanoTime();
+			ApplyBellmanFord.potentials(g, s);
+			best = Math.min(best, (System.nanoTime() - start) / 1e6);
+		}
+		return best;
+	}
+
+	public static void main(final String[] args) {
+		// the negative cycle check of Bellman-Ford recurses along the
+		// shortest paths tree, as deep as the chain is long
+		Thread run = new Thread(null, new Runnable() {
+			public void run() {
+				benchmark(args);
+			}
+		}, "benchmark", 1L << 28);
+		run.start();
+	}
+
+	private static void benchmark(String[] args) {
+		int[] sizes = { 1000, 4000, 16000 };
+		if (args.length > 0) {
+			sizes = new int[args.length];
+			for (int i = 0; i < args.length; i++)
+				sizes[i] = Integer.parseInt(args[i]);
+		}
+		StdRandom.setSeed(1501);
+		StdOut.printf("%-8s %8s %9s %10s %10s %10s %10s\n", "family", "V",
+				"E", "spfa ms", "scc ms", "goldberg", "parallel");
+		for (String family : new String[] { "chain", "grid", "random" }) {
+			for (int V : sizes) {
+				CompactDigraph g = new CompactDigraph(generate(family, V));
+				int s = g.V() - 1;
+				StdOut.printf("%-8s %8d %9d", family, g.V(), g.E());
+				ApplyBellmanFord.solver = "spfa";
+				Potentials reference = ApplyBellmanFord.potentials(g, s);
+				for (String solver : SOLVERS) {
+					StdOut.printf(" %10.1f", time(solver, g, s));
+					ApplyBellmanFord.solver = solver;
+					Potentials sp = ApplyBellmanFord.potentials(g, s);
+					int differ = 0;
+					for (int v = 0; v < g.V(); v++)
+						if (sp.distTo(v) != reference.distTo(v))
+							differ++;
+					if (differ > 0)
+						StdOut.printf(" (%d differ)", differ);
+				}
+				StdOut.println();
+			}
+		}
+
+		// queue disciplines of spfa: time, passes and vertices scanned
+		StdOut.printf("\n%-8s %8s %-8s %10s %8s %12s\n", "family", "V",
+				"queue", "ms", "passes", "scans");
+		for (String family : new String[] { "chain", "grid", "random" }) {
+			boolean[] slow = new boolean[DISCIPLINES.length];
+			for (int V : sizes) {
+				CompactDigraph g = new CompactDigraph(generate(family, V));
+				int s = g.V() - 1;
+				for (int i = 0; i < DISCIPLINES.length; i++) {
+					String discipline = DISCIPLINES[i];
+					if (slow[i]) {
+						StdOut.printf("%-8s %8d %-8s %10s\n", family, g.V(),
+								discipline, "skipped");
+						continue;
+					}
+					ApplyBellmanFord sp = null;
+					double ms = Double.POSITIVE_INFINITY;
+					for (int run = 0; run < 3 && ms > SLOW / 10; run++) {
+						long start = System.nanoTime();
+						sp = new ApplyBellmanFord(g, s, discipline);
+						ms = Math.min(ms, (System.nanoTime() - start) / 1e6);
+					}
+					slow[i] = ms > SLOW;
+					StdOut.printf("%-8s %8d %-8s %10.1f %8d %12d\n", family,
+							g.V(), discipline, ms, sp.passes(), sp.scans());
+				}
+			}
+		}
+	}
+}
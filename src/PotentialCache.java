@@ -0,0 +1,221 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * PotentialCache keeps the results of ApplyBellmanFord on disk, so a graph
+ * that was solved before is not solved again (<tt>java ApplyBellmanFord s
+ * -cache dir [-cachemb n] [-cachedays n]</tt>). An entry is the file
+ * <tt>fingerprint-s-settings.pot</tt>, named after the fingerprint of G*
+ * (CompactDigraph.fingerprint()), the source and a hash of the settings of
+ * the run (ApplyBellmanFord.settings(): <tt>-solver</tt>, <tt>-queue</tt>
+ * and <tt>-order</tt>), which decide which negative cycle is printed, and
+ * holds either the distance of every vertex or the edges of the negative
+ * cycle found. Its header repeats the settings in full, so a run with other
+ * settings never reads it.
+ * <p>
+ * Entries are written to a temporary file and renamed, so concurrent runs
+ * never see half an entry. The time an entry was last used is the time its
+ * file was last modified: a hit touches it, and after every new entry the
+ * entries not used for <tt>maxAge</tt> are deleted, then the least recently
+ * used ones until the directory holds at most <tt>maxBytes</tt>. An entry
+ * that cannot be read, or that was made for a graph of another size, is a
+ * miss.
+ *
+ * @author SephyZhou
+ *
+ */
+public class PotentialCache {
+	private static final int MAGIC = 0x504F5432; // "POT2"
+	private static final String SUFFIX = ".pot";
+
+	private final File dir;
+	private final long maxBytes; // size of the directory at most
+	private final long maxAge; // ms an entry is kept without being used
+
+	/**
+	 * The results of one run read back from the cache.
+	 */
+	private static class Entry implements Potentials {
+		private final double[] distTo; // NaN where there is no path
+		private final List<DirectedEdge> cycle; // null if none
+
+		Entry(double[] distTo, List<DirectedEdge> cycle) {
+			this.distTo = distTo;
+			this.cycle = cycle;
+		}
+
+		public boolean hasNegativeCycle() {
+			return cycle != null;
+		}
+
+		public Iterable<DirectedEdge> negativeCycle() {
+			return cycle;
+		}
+
+		public boolean hasPathTo(int v) {
+			return !Double.isNaN(distTo[v]);
+		}
+
+		public double distTo(int v) {
+			if (hasNegativeCycle())
+				throw new UnsupportedOperationException(
+						"Negative cost cycle exists");
+			return Double.isNaN(distTo[v]) ? Double.POSITIVE_INFINITY
+					: distTo[v];
+		}
+	}
+
+	public PotentialCache(File dir, long maxBytes, long maxAge)
+			throws IOException {
+		if (!dir.isDirectory() && !dir.mkdirs())
+			throw new IOException("cannot create " + dir);
+		this.dir = dir;
+		this.maxBytes = maxBytes;
+		this.maxAge = maxAge;
+	}
+
+	/**
+	 * Returns the potentials of <tt>g</tt> from <tt>s</tt> from the cache, or
+	 * solves <tt>g</tt> with ApplyBellmanFord.solve() and stores the result;
+	 * a result that cannot be stored is only reported on standard error.
+	 */
+	public Potentials solve(CompactDigraph g, int s) {
+		Potentials p = get(g, s);
+		if (p == null) {
+			p = ApplyBellmanFord.solve(g, s);
+			try {
+				put(g, s, p);
+			} catch (IOException e) {
+				System.err.println("potential cache: " + e.getMessage());
+			}
+		}
+		return p;
+	}
+
+	// the cached potentials of g from s, null on a miss
+	public Potentials get(CompactDigraph g, int s) {
+		File file = file(g, s);
+		if (!file.exists())
+			return null;
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(file)));
+			try {
+				if (in.readInt() != MAGIC || in.readInt() != g.V()
+						|| in.readInt() != g.E()
+						|| in.readLong() != g.fingerprint()
+						|| in.readInt() != s
+						|| !in.readUTF().equals(ApplyBellmanFord.settings()))
+					return null;
+				Entry entry;
+				if (in.readBoolean()) {
+					int n = in.readInt();
+					List<DirectedEdge> cycle = new ArrayList<DirectedEdge>(n);
+					for (int i = 0; i < n; i++)
+						cycle.add(new DirectedEdge(in.readInt(), in.readInt(),
+								in.readDouble()));
+					entry = new Entry(null, cycle);
+				} else {
+					double[] distTo = new double[g.V()];
+					for (int v = 0; v < distTo.length; v++)
+						distTo[v] = in.readDouble();
+					entry = new Entry(distTo, null);
+				}
+				file.setLastModified(System.currentTimeMillis());
+				return entry;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return null; // unreadable or cut short: solve again
+		}
+	}
+
+	// stores the potentials of g from s, then evicts what is too old or too
+	// much
+	public void put(CompactDigraph g, int s, Potentials p) throws IOException {
+		File tmp = File.createTempFile("entry", ".tmp", dir);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(tmp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(g.V());
+			out.writeInt(g.E());
+			out.writeLong(g.fingerprint());
+			out.writeInt(s);
+			out.writeUTF(ApplyBellmanFord.settings());
+			out.writeBoolean(p.hasNegativeCycle());
+			if (p.hasNegativeCycle()) {
+				List<DirectedEdge> cycle = new ArrayList<DirectedEdge>();
+				for (DirectedEdge e : p.negativeCycle())
+					cycle.add(e);
+				out.writeInt(cycle.size());
+				for (DirectedEdge e : cycle) {
+					out.writeInt(e.from());
+					out.writeInt(e.to());
+					out.writeDouble(e.weight());
+				}
+			} else {
+				for (int v = 0; v < g.V(); v++)
+					out.writeDouble(p.hasPathTo(v) ? p.distTo(v) : Double.NaN);
+			}
+		} finally {
+			out.close();
+		}
+		Files.move(tmp.toPath(), file(g, s).toPath(),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		evict();
+	}
+
+	// deletes the entries unused for maxAge, then the least recently used
+	// ones while the directory holds more than maxBytes
+	public void evict() {
+		File[] files = dir.listFiles();
+		if (files == null)
+			return;
+		final long[] used = new long[files.length];
+		Integer[] order = new Integer[files.length];
+		for (int i = 0; i < files.length; i++) {
+			used[i] = files[i].lastModified();
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Long.compare(used[a], used[b]);
+			}
+		});
+		long now = System.currentTimeMillis(), bytes = 0;
+		for (File f : files)
+			if (f.getName().endsWith(SUFFIX))
+				bytes += f.length();
+		for (int i : order) {
+			File f = files[i];
+			if (!f.getName().endsWith(SUFFIX))
+				continue;
+			if (now - used[i] <= maxAge && bytes <= maxBytes)
+				break;
+			long length = f.length();
+			if (f.delete())
+				bytes -= length;
+		}
+	}
+
+	private File file(CompactDigraph g, int s) {
+		return new File(dir, String.format("%016x-%d-%08x%s",
+				g.fingerprint(), s, ApplyBellmanFord.settings().hashCode(),
+				SUFFIX));
+	}
+}
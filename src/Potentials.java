@@ -0,0 +1,24 @@
+/**
+ * Potentials is what ApplyBellmanFord needs from a single-source shortest
+ * path solver run on the auxiliary graph G*: the distances from the extra
+ * vertex s, which become the vertex weights used to reweight G, or a negative
+ * cycle that makes reweighting impossible. ApplyBellmanFord itself is the
+ * default solver; the others are chosen with <tt>-solver</tt>.
+ *
+ * @author SephyZhou
+ *
+ */
+public interface Potentials {
+
+	// is there a negative cycle reachable from the source?
+	boolean hasNegativeCycle();
+
+	// a negative cycle reachable from the source, null if there is none
+	Iterable<DirectedEdge> negativeCycle();
+
+	// is there a path from the source to v?
+	boolean hasPathTo(int v);
+
+	// length of a shortest path from the source to v
+	double distTo(int v);
+}
@@ -0,0 +1,58 @@
+/**
+ * Progress reports how far a long run has come on standard error: at most
+ * once every <tt>interval</tt> milliseconds, the number of sources done out
+ * of the total, the rate of the sources computed in this run and the time
+ * the rest will take at that rate. Sources skipped because an earlier run
+ * finished them count as done but not in the rate.
+ *
+ * @author SephyZhou
+ *
+ */
+public class Progress {
+	private final int total;
+	private final long interval; // ms between two reports
+	private final long start = System.currentTimeMillis();
+	private long last = start; // time of the last report
+	private int skipped; // sources done before this run
+	private int computed; // sources done in this run
+
+	public Progress(int total, long interval) {
+		this.total = total;
+		this.interval = interval;
+	}
+
+	// n more sources were finished by an earlier run
+	public void skipped(int n) {
+		skipped += n;
+	}
+
+	// one more source was computed; reports if the interval has passed
+	public void done() {
+		computed++;
+		long now = System.currentTimeMillis();
+		if (now - last >= interval) {
+			last = now;
+			report(now);
+		}
+	}
+
+	// the final report
+	public void finish() {
+		report(System.currentTimeMillis());
+	}
+
+	private void report(long now) {
+		double seconds = Math.max(now - start, 1) / 1000.0;
+		double rate = computed / seconds;
+		int left = total - skipped - computed;
+		String eta = rate > 0 ? time((long) (left / rate)) : "unknown";
+		System.err.printf("%d/%d sources, %.1f sources/s, ETA %s%n", skipped
+				+ computed, total, rate, eta);
+	}
+
+	// h:mm:ss
+	private static String time(long seconds) {
+		return String.format("%d:%02d:%02d", seconds / 3600,
+				seconds / 60 % 60, seconds % 60);
+	}
+}
@@ -0,0 +1,149 @@
+import java.util.Arrays;
+import java.util.Formatter;
+import java.util.Locale;
+
+/**
+ * RadiusQuery finds every vertex within distance <tt>D</tt> of a source in
+ * the original graph G, searching G** only as far as it must. A path to
+ * <tt>v</tt> has length <em>d**(s, v) - h(s) + h(v)</em> in G, where
+ * <em>h</em> are the vertex weights of ApplyBellmanFord, so <tt>v</tt> is
+ * within <tt>D</tt> if <em>d**(s, v) &lt;= D + h(s) - h(v)</em>. That bound
+ * depends on <tt>v</tt>, but none is larger than <em>D + h(s) - min h</em>,
+ * so the search on G** stops once the closest vertex left is farther than
+ * that. The vertices it settled are then kept if their length in G is at
+ * most <tt>D</tt>: the parent's length plus the weight of the tree edge
+ * recovered in G, the very sum ApplyDijkstraAllPairs.tree() forms, so a
+ * distance printed here is the one printed in the rows.
+ * <p>
+ * The result is a Ball: the vertices in increasing order and their
+ * distances, in two primitive arrays.
+ *
+ * java RadiusQuery s D [s D ...] &lt; output of ApplyBellmanFord
+ *
+ * @author SephyZhou
+ *
+ */
+public class RadiusQuery {
+	private static final double EPSILON = 1e-9; // relative slack of the bound
+
+	private final CompactDigraph g;
+	private final double[] pointWeight;
+	private final GraphSnapshot snapshot;
+	private final double lowest; // smallest vertex weight
+	private final ThreadLocal<double[]> length = new ThreadLocal<double[]>() {
+		protected double[] initialValue() {
+			return new double[g.V()];
+		}
+	};
+
+	/**
+	 * The vertices within a radius of a source and their distances.
+	 */
+	public static class Ball {
+		private final int[] vertex;
+		private final double[] dist;
+
+		Ball(int[] vertex, double[] dist) {
+			this.vertex = vertex;
+			this.dist = dist;
+		}
+
+		// number of vertices
+		public int size() {
+			return vertex.length;
+		}
+
+		// the i-th vertex, in increasing order
+		public int vertex(int i) {
+			return vertex[i];
+		}
+
+		// its distance from the source
+		public double distance(int i) {
+			return dist[i];
+		}
+	}
+
+	/**
+	 * @param g
+	 *            the reweighted graph G**
+	 * @param pointWeight
+	 *            the vertex weights it was reweighted with
+	 * @throws IllegalArgumentException
+	 *             if an edge of <tt>g</tt> has negative weight
+	 */
+	public RadiusQuery(CompactDigraph g, double[] pointWeight) {
+		this.g = g;
+		this.pointWeight = pointWeight;
+		snapshot = new GraphSnapshot(g);
+		double min = 0.0;
+		for (int v = 0; v < g.V(); v++)
+			min = Math.min(min, pointWeight[v]);
+		lowest = min;
+	}
+
+	/**
+	 * Returns the vertices at distance at most <tt>D</tt> from <tt>s</tt>
+	 * in G, <tt>s</tt> included if <tt>D</tt> is not negative. Several
+	 * threads may call it at once.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 *             if <tt>s</tt> is not a vertex
+	 */
+	public Ball within(int s, double D) {
+		if (s < 0 || s >= g.V())
+			throw new IndexOutOfBoundsException("vertex " + s
+					+ " is not between 0 and " + (g.V() - 1));
+		double limit = D + pointWeight[s] - lowest;
+		limit += EPSILON * Math.max(1.0, Math.abs(limit));
+		SnapshotQuery sp = snapshot.within(s, limit);
+
+		// lengths in G, settled in order of distance so every parent comes
+		// before its children
+		double[] length = this.length.get();
+		int n = sp.settled(), k = 0;
+		int[] vertex = new int[n];
+		for (int i = 0; i < n; i++) {
+			int v = sp.settled(i);
+			int e = sp.lastEdge(v);
+			if (e == -1) {
+				length[v] = 0.0;
+			} else {
+				int u = g.from(e);
+				length[v] = length[u]
+						+ (g.weight(e) - pointWeight[u] + pointWeight[v]);
+			}
+			if (length[v] <= D)
+				vertex[k++] = v;
+		}
+		vertex = Arrays.copyOf(vertex, k);
+		Arrays.sort(vertex);
+		double[] dist = new double[k];
+		for (int i = 0; i < k; i++)
+			dist[i] = length[vertex[i]];
+		return new Ball(vertex, dist);
+	}
+
+	public static void main(String[] args) {
+		ApplyDijkstraAllPairs.readGraphFromBF();
+		CompactDigraph G = new CompactDigraph();
+		RadiusQuery radius = new RadiusQuery(G,
+				ApplyDijkstraAllPairs.pointWeight);
+		StringBuilder out = new StringBuilder();
+		Formatter f = new Formatter(out, Locale.US);
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			int s = Integer.parseInt(args[i]);
+			Ball ball = radius.within(s, Double.parseDouble(args[i + 1]));
+			out.setLength(0);
+			for (int j = 0; j < ball.size(); j++) {
+				if (ball.distance(j) < 0)
+					f.format("%d to %d (%.2f)%n", s, ball.vertex(j),
+							ball.distance(j));
+				else
+					f.format("%d to %d ( %.2f)%n", s, ball.vertex(j),
+							ball.distance(j));
+			}
+			StdOut.println(out);
+		}
+	}
+}
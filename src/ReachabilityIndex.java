@@ -0,0 +1,124 @@
+import java.util.BitSet;
+
+/**
+ * ReachabilityIndex answers which vertices a source can reach, from the
+ * condensation of the graph into its strongly connected components
+ * (CompactSCC). Every vertex of a component reaches the same vertices, so
+ * the set is found per component by a search over the condensation, which
+ * only visits the components that are reached and costs no more than the
+ * vertices it finds; the set is kept for the next source of the same
+ * component. Every thread searches in its own scratch space, so several may
+ * ask at once.
+ *
+ * @author SephyZhou
+ *
+ */
+public class ReachabilityIndex {
+	private final CompactDigraph g;
+	private final CompactSCC scc;
+	private final int[] first; // edges of the condensation from component c
+	private final int[] to; // are to[first[c]] .. to[first[c+1]-1]
+	private final ThreadLocal<Search> scratch = new ThreadLocal<Search>() {
+		protected Search initialValue() {
+			return new Search();
+		}
+	};
+
+	// the scratch space of one thread: the set of the component it searched
+	// last and the components that set is made of
+	private class Search {
+		final BitSet targets = new BitSet(g.V());
+		final int[] mark = new int[scc.count()]; // search that reached c
+		final int[] queue = new int[scc.count()]; // components reached
+		int reached; // number of them
+		int component = -1; // the component searched last
+		int searches;
+	}
+
+	public ReachabilityIndex(CompactDigraph g) {
+		this.g = g;
+		scc = new CompactSCC(g);
+		int C = scc.count();
+		int[] mark = new int[C];
+
+		// the edges between components, each pair once
+		first = new int[C + 1];
+		IntDeque edges = new IntDeque();
+		for (int c = 0; c < C; c++) {
+			first[c] = edges.size();
+			mark[c] = c + 1;
+			for (int i = 0; i < scc.size(c); i++) {
+				int v = scc.member(c, i);
+				for (int e = g.begin(v); e < g.end(v); e++) {
+					int d = scc.id(g.to(e));
+					if (mark[d] != c + 1) {
+						mark[d] = c + 1;
+						edges.addLast(d);
+					}
+				}
+			}
+		}
+		first[C] = edges.size();
+		to = new int[edges.size()];
+		for (int i = 0; i < to.length; i++)
+			to[i] = edges.removeFirst();
+	}
+
+	// the graph indexed
+	public CompactDigraph graph() {
+		return g;
+	}
+
+	// number of strongly connected components
+	public int components() {
+		return scc.count();
+	}
+
+	/**
+	 * Returns the vertices reachable from <tt>s</tt>, <tt>s</tt> included.
+	 * The set belongs to the calling thread and must not be changed; it is
+	 * valid until the thread asks for a vertex of another component.
+	 */
+	public BitSet targets(int s) {
+		Search search = scratch.get();
+		int c = scc.id(s);
+		if (search.component == c)
+			return search.targets;
+		BitSet targets = search.targets;
+		int[] mark = search.mark, queue = search.queue;
+		for (int i = 0; i < search.reached; i++) {
+			int d = queue[i];
+			for (int j = 0; j < scc.size(d); j++)
+				targets.clear(scc.member(d, j));
+		}
+		int searches = ++search.searches;
+		int head = 0, tail = 0;
+		queue[tail++] = c;
+		mark[c] = searches;
+		while (head < tail) {
+			int d = queue[head++];
+			for (int i = 0; i < scc.size(d); i++)
+				targets.set(scc.member(d, i));
+			for (int i = first[d]; i < first[d + 1]; i++) {
+				if (mark[to[i]] != searches) {
+					mark[to[i]] = searches;
+					queue[tail++] = to[i];
+				}
+			}
+		}
+		search.reached = tail;
+		search.component = c;
+		return targets;
+	}
+
+	// does s reach no vertex but itself? without a search
+	public boolean reachesOnlyItself(int s) {
+		int c = scc.id(s);
+		return scc.size(c) == 1 && first[c] == first[c + 1];
+	}
+
+	// can s reach t?
+	public boolean reachable(int s, int t) {
+		return targets(s).get(t);
+	}
+}
@@ -0,0 +1,219 @@
+/**
+ * SCCPotentials computes the vertex weights of ApplyBellmanFord component by
+ * component (<tt>java ApplyBellmanFord s -solver scc</tt>). The graph is
+ * condensed into its strongly connected components, which are processed in
+ * topological order. A negative cycle can only lie inside a component, so
+ * Bellman-Ford (queue-based, as in ApplyBellmanFord) only runs inside the
+ * components with more than one vertex, seeded with the distances that
+ * reached them from earlier components; the edges between components are
+ * relaxed exactly once each, when their tail's component is finished. On a
+ * graph that is acyclic apart from a few small components this takes about
+ * linear time instead of the O(<em>VE</em>) worst case of the whole-graph
+ * search.
+ * <p>
+ * A negative cycle is looked for in every component, so
+ * <tt>negativeCycles()</tt> returns one per component that has one; vertices
+ * after such a component get no distance.
+ *
+ * @author SephyZhou
+ *
+ */
+public class SCCPotentials implements Potentials {
+	private final CompactDigraph g;
+	private final CompactSCC scc;
+	private final double[] distTo; // distTo[v] = distance of shortest s->v path
+	private final int[] edgeTo; // edgeTo[v] = index of last edge on shortest
+								// s->v path, -1 if none
+	private final boolean[] poisoned; // poisoned[c] = is component c after a
+										// negative cycle?
+	private final Queue<Iterable<DirectedEdge>> cycles = new Queue<Iterable<DirectedEdge>>();
+
+	// scratch space of the search inside a component
+	private final int[] queue; // ring buffer of vertices to relax
+	private final boolean[] onQueue;
+	private final int[] length; // edges inside the component on the path
+	private final int[] mark; // walk that last visited a vertex
+
+	public SCCPotentials(CompactDigraph g, int s) {
+		this.g = g;
+		int V = g.V();
+		scc = new CompactSCC(g);
+		distTo = new double[V];
+		edgeTo = new int[V];
+		poisoned = new boolean[scc.count()];
+		queue = new int[V];
+		onQueue = new boolean[V];
+		length = new int[V];
+		mark = new int[V];
+		for (int v = 0; v < V; v++) {
+			distTo[v] = Double.POSITIVE_INFINITY;
+			edgeTo[v] = -1;
+		}
+		distTo[s] = 0.0;
+
+		for (int c = 0; c < scc.count(); c++) {
+			boolean cyclic = scc.size(c) > 1 || selfLoop(c);
+			if (poisoned[c] || !reached(c)) {
+				// still look for a negative cycle of its own
+				if (cyclic && search(c, true))
+					poisoned[c] = true;
+				clear(c);
+			} else if (cyclic && search(c, false)) {
+				poisoned[c] = true;
+				clear(c);
+			}
+			relaxOutgoing(c);
+		}
+	}
+
+	// has any vertex of component c got a distance?
+	private boolean reached(int c) {
+		for (int i = 0; i < scc.size(c); i++)
+			if (distTo[scc.member(c, i)] < Double.POSITIVE_INFINITY)
+				return true;
+		return false;
+	}
+
+	private boolean selfLoop(int c) {
+		int v = scc.member(c, 0);
+		for (int e = g.begin(v); e < g.end(v); e++)
+			if (g.to(e) == v)
+				return true;
+		return false;
+	}
+
+	// Bellman-Ford inside component c, starting from the members that have a
+	// distance; detectOnly starts from every member at 0, to find a negative
+	// cycle of a component whose distances do not matter. Returns true if a
+	// negative cycle was found.
+	private boolean search(int c, boolean detectOnly) {
+		int n = scc.size(c);
+		int head = 0, size = 0;
+		for (int i = 0; i < n; i++) {
+			int v = scc.member(c, i);
+			if (detectOnly) {
+				distTo[v] = 0.0;
+				edgeTo[v] = -1;
+			}
+			length[v] = 0;
+			if (distTo[v] < Double.POSITIVE_INFINITY) {
+				queue[(head + size++) % n] = v;
+				onQueue[v] = true;
+			}
+		}
+		while (size > 0) {
+			int v = queue[head];
+			head = (head + 1) % n;
+			size--;
+			onQueue[v] = false;
+			for (int e = g.begin(v); e < g.end(v); e++) {
+				int w = g.to(e);
+				if (scc.id(w) != c || distTo[w] <= distTo[v] + g.weight(e))
+					continue;
+				distTo[w] = distTo[v] + g.weight(e);
+				edgeTo[w] = e;
+				length[w] = length[v] + 1;
+				// a path of n edges inside the component repeats a vertex
+				if (length[w] >= n && findCycle(c))
+					return true;
+				if (!onQueue[w]) {
+					queue[(head + size++) % n] = w;
+					onQueue[w] = true;
+				}
+			}
+		}
+		return false;
+	}
+
+	// look for a cycle in the shortest paths tree inside component c; such a
+	// cycle has negative weight
+	private boolean findCycle(int c) {
+		for (int i = 0; i < scc.size(c); i++)
+			mark[scc.member(c, i)] = -1;
+		for (int i = 0; i < scc.size(c); i++) {
+			int v = scc.member(c, i);
+			// follow the tree edges back from v until leaving the component,
+			// reaching an earlier walk, or coming back to this walk
+			while (mark[v] == -1) {
+				mark[v] = i;
+				int e = edgeTo[v];
+				if (e == -1 || scc.id(g.from(e)) != c)
+					break;
+				v = g.from(e);
+				if (mark[v] == i) {
+					Stack<DirectedEdge> cycle = new Stack<DirectedEdge>();
+					int w = v;
+					do {
+						cycle.push(g.edge(edgeTo[w]));
+						w = g.from(edgeTo[w]);
+					} while (w != v);
+					cycles.enqueue(cycle);
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	// forget the distances of component c, which is unreachable or at or
+	// after a negative cycle
+	private void clear(int c) {
+		for (int i = 0; i < scc.size(c); i++) {
+			int v = scc.member(c, i);
+			distTo[v] = Double.POSITIVE_INFINITY;
+			edgeTo[v] = -1;
+		}
+	}
+
+	// relax the edges from component c to later components
+	private void relaxOutgoing(int c) {
+		for (int i = 0; i < scc.size(c); i++) {
+			int v = scc.member(c, i);
+			for (int e = g.begin(v); e < g.end(v); e++) {
+				int w = g.to(e);
+				if (scc.id(w) == c)
+					continue;
+				if (poisoned[c]) {
+					poisoned[scc.id(w)] = true;
+				} else if (distTo[w] > distTo[v] + g.weight(e)) {
+					distTo[w] = distTo[v] + g.weight(e);
+					edgeTo[w] = e;
+				}
+			}
+		}
+	}
+
+	public boolean hasNegativeCycle() {
+		return !cycles.isEmpty();
+	}
+
+	// the first negative cycle, in topological order of the components
+	public Iterable<DirectedEdge> negativeCycle() {
+		return cycles.isEmpty() ? null : cycles.peek();
+	}
+
+	// one negative cycle for every component that contains one
+	public Iterable<Iterable<DirectedEdge>> negativeCycles() {
+		return cycles;
+	}
+
+	// number of strongly connected components
+	public int components() {
+		return scc.count();
+	}
+
+	public boolean hasPathTo(int v) {
+		return distTo[v] < Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * @throws UnsupportedOperationException
+	 *             if there is a negative cost cycle
+	 */
+	public double distTo(int v) {
+		if (hasNegativeCycle())
+			throw new UnsupportedOperationException(
+					"Negative cost cycle exists");
+		return distTo[v];
+	}
+}
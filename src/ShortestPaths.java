@@ -0,0 +1,24 @@
+/**
+ * ShortestPaths is what is read from a shortest paths tree of the graph G**
+ * once it has been searched from one source: ApplyDijkstra keeps its own
+ * arrays, SnapshotQuery lends the scratch space of its thread until the next
+ * query.
+ *
+ * @author SephyZhou
+ *
+ */
+public interface ShortestPaths {
+
+	// the graph searched
+	CompactDigraph graph();
+
+	// is there a path from the source to v?
+	boolean hasPathTo(int v);
+
+	// length of the shortest path from the source to v
+	double distTo(int v);
+
+	// index in the graph of the last edge on the shortest path from the
+	// source to v, -1 if none
+	int lastEdge(int v);
+}
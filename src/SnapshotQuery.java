@@ -0,0 +1,157 @@
+/**
+ * SnapshotQuery is the scratch space of one thread querying a GraphSnapshot,
+ * and the result of its last query. It runs Dijkstra's algorithm as
+ * ApplyDijkstra does, with the same tree for the same graph, but its arrays
+ * are made once: every entry carries the number of the query that wrote it,
+ * and an entry of an earlier query reads as if it were unset. Starting a
+ * query therefore costs nothing, and a query costs time proportional to the
+ * vertices and edges it reaches rather than to the whole graph.
+ * <p>
+ * On an acyclic graph a full search relaxes the vertices in topological
+ * order instead of through the queue, from the place of the source on, like
+ * ApplyDijkstra.relaxInOrder(); where two equally close vertices offer a
+ * path, so the tree would depend on the queue, it searches again with the
+ * queue.
+ *
+ * @author SephyZhou
+ *
+ */
+public class SnapshotQuery implements ShortestPaths {
+	private final CompactDigraph g;
+	private final double[] distTo; // distTo[v] = distance of shortest s->v path
+	private final int[] edgeTo; // edgeTo[v] = index of last edge on shortest
+								// s->v path, -1 if none
+	private final int[] stamp; // stamp[v] = query that last reached v
+	private final IndexMinHeap pq;
+	private final int[] settled; // vertices taken off the queue, in order
+	private int n; // number of them
+	private int query; // number of the current query
+	private final int[] topological; // topological order, null if cyclic
+	private final int[] rank; // rank[v] = place of v in it
+
+	SnapshotQuery(CompactDigraph g) {
+		this.g = g;
+		distTo = new double[g.V()];
+		edgeTo = new int[g.V()];
+		stamp = new int[g.V()];
+		pq = new IndexMinHeap(g.V());
+		settled = new int[g.V()];
+		topological = g.topologicalOrder();
+		rank = topological == null ? null : new int[g.V()];
+		for (int i = 0; rank != null && i < topological.length; i++)
+			rank[topological[i]] = i;
+	}
+
+	// shortest paths from s, forgetting the last query; the weights were
+	// checked by GraphSnapshot
+	void search(int s) {
+		if (topological != null) {
+			start(s);
+			if (relaxInOrder(s))
+				return;
+		}
+		search(s, null, 0, Double.POSITIVE_INFINITY);
+	}
+
+	// forgets the last query and reaches s
+	private void start(int s) {
+		if (++query == Integer.MAX_VALUE) {
+			for (int v = 0; v < stamp.length; v++)
+				stamp[v] = 0;
+			query = 1;
+		}
+		n = 0;
+		reach(s, 0.0, -1);
+	}
+
+	// the vertices from s on in topological order, as
+	// ApplyDijkstra.relaxInOrder(): of two equally short paths the one
+	// through the vertex closer to s is kept, and false is returned if the
+	// two are equally close. The vertices are settled in topological order
+	private boolean relaxInOrder(int s) {
+		for (int i = rank[s]; i < topological.length; i++) {
+			int v = topological[i];
+			if (stamp[v] != query)
+				continue;
+			settled[n++] = v;
+			for (int e = g.begin(v); e < g.end(v); e++) {
+				int w = g.to(e);
+				double d = distTo[v] + g.weight(e);
+				if (distTo(w) > d) {
+					reach(w, d, e);
+				} else if (distTo[w] == d && edgeTo[w] != -1
+						&& g.from(edgeTo[w]) != v) {
+					double u = distTo[g.from(edgeTo[w])];
+					if (u == distTo[v])
+						return false;
+					if (u > distTo[v])
+						edgeTo[w] = e;
+				}
+			}
+		}
+		return true;
+	}
+
+	// the same, stopping once count vertices marked in target are taken off
+	// the queue, if target is not null, or once the closest vertex left on
+	// the queue is farther than limit
+	void search(int s, boolean[] target, int count, double limit) {
+		start(s);
+		pq.clear();
+		pq.insert(s, 0.0);
+		while (!pq.isEmpty()) {
+			int v = pq.delMin();
+			if (distTo[v] > limit)
+				return;
+			settled[n++] = v;
+			if (target != null && target[v] && --count <= 0)
+				return;
+			for (int e = g.begin(v); e < g.end(v); e++) {
+				int w = g.to(e);
+				double d = distTo[v] + g.weight(e);
+				if (distTo(w) > d) {
+					reach(w, d, e);
+					if (pq.contains(w))
+						pq.decreaseKey(w, d);
+					else
+						pq.insert(w, d);
+				}
+			}
+		}
+	}
+
+	// number of vertices settled by the last query, whose distances are
+	// final
+	int settled() {
+		return n;
+	}
+
+	// the i-th vertex settled, in order of distance (in topological order
+	// after a full search of an acyclic graph); a vertex comes after the one
+	// before it on its path either way
+	int settled(int i) {
+		return settled[i];
+	}
+
+	private void reach(int v, double d, int e) {
+		distTo[v] = d;
+		edgeTo[v] = e;
+		stamp[v] = query;
+	}
+
+	public CompactDigraph graph() {
+		return g;
+	}
+
+	public boolean hasPathTo(int v) {
+		return stamp[v] == query;
+	}
+
+	public double distTo(int v) {
+		return stamp[v] == query ? distTo[v] : Double.POSITIVE_INFINITY;
+	}
+
+	public int lastEdge(int v) {
+		return stamp[v] == query ? edgeTo[v] : -1;
+	}
+}
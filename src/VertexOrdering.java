@@ -0,0 +1,239 @@
+/**
+ * VertexOrdering renumbers the vertices of a graph so that vertices which are
+ * close in the graph also get close numbers. The shortest path searches then
+ * walk the adjacency lists and the distTo[] and edgeTo[] arrays in a far more
+ * local order than the arbitrary numbering of the input file. Three orderings
+ * are supported:
+ * <ul>
+ * <li><tt>bfs</tt>: breadth-first order over the undirected graph;
+ * <li><tt>rcm</tt>: reverse Cuthill-McKee, a breadth-first order that starts
+ * every component at a vertex of least degree, visits neighbours by
+ * increasing degree and is reversed at the end;
+ * <li><tt>degree</tt>: vertices sorted by decreasing degree.
+ * </ul>
+ * A permutation <tt>perm</tt> gives the new number <tt>perm[v]</tt> of every
+ * vertex <tt>v</tt>. The algorithms run on <tt>relabel(g, perm)</tt> and map
+ * their results back with <tt>unpermute(perm, g)</tt> or
+ * <tt>restore(potentials, perm)</tt>, so the printed output stays in the
+ * numbering of the input. A negative cycle is only mapped back edge by edge;
+ * ApplyBellmanFord.solve() looks for it again in the input numbering, since
+ * another numbering may find another cycle or start it elsewhere.
+ *
+ * @author SephyZhou
+ *
+ */
+public class VertexOrdering {
+
+	/**
+	 * Returns the permutation of the given kind for <tt>g</tt>.
+	 *
+	 * @param g
+	 *            the graph
+	 * @param kind
+	 *            <tt>bfs</tt>, <tt>rcm</tt> or <tt>degree</tt>
+	 * @param hub
+	 *            a vertex whose edges are left out when neighbourhoods are
+	 *            built, such as the extra vertex s of the auxiliary graph that
+	 *            is adjacent to every vertex; -1 for none. It is numbered
+	 *            last.
+	 * @throws IllegalArgumentException
+	 *             if <tt>kind</tt> is not a known ordering
+	 */
+	public static int[] order(CompactDigraph g, String kind, int hub) {
+		int V = g.V();
+		// undirected neighbourhoods in compressed form
+		int[] first = new int[V + 1];
+		for (int e = 0; e < g.E(); e++) {
+			int v = g.from(e), w = g.to(e);
+			if (v == hub || w == hub || v == w)
+				continue;
+			first[v + 1]++;
+			first[w + 1]++;
+		}
+		for (int v = 0; v < V; v++)
+			first[v + 1] += first[v];
+		int[] next = new int[V];
+		for (int v = 0; v < V; v++)
+			next[v] = first[v];
+		int[] adj = new int[first[V]];
+		for (int e = 0; e < g.E(); e++) {
+			int v = g.from(e), w = g.to(e);
+			if (v == hub || w == hub || v == w)
+				continue;
+			adj[next[v]++] = w;
+			adj[next[w]++] = v;
+		}
+		int[] degree = new int[V];
+		for (int v = 0; v < V; v++)
+			degree[v] = first[v + 1] - first[v];
+
+		int[] visit; // vertices in their new order
+		if (kind.equals("bfs"))
+			visit = breadthFirst(V, first, adj, degree, hub, false);
+		else if (kind.equals("rcm"))
+			visit = breadthFirst(V, first, adj, degree, hub, true);
+		else if (kind.equals("degree"))
+			visit = byDegree(V, degree, hub);
+		else
+			throw new IllegalArgumentException("unknown vertex ordering "
+					+ kind + " (use bfs, rcm or degree)");
+
+		int[] perm = new int[V];
+		for (int i = 0; i < V; i++)
+			perm[visit[i]] = i;
+		return perm;
+	}
+
+	// breadth-first order of all components; Cuthill-McKee starts every
+	// component at a vertex of least degree, takes neighbours by increasing
+	// degree and is reversed at the end
+	private static int[] breadthFirst(int V, int[] first, int[] adj,
+			int[] degree, int hub, boolean cuthillMcKee) {
+		Integer[] starts = new Integer[V];
+		for (int v = 0; v < V; v++)
+			starts[v] = v;
+		if (cuthillMcKee)
+			java.util.Arrays.sort(starts, byDegree(degree));
+		boolean[] marked = new boolean[V];
+		int[] visit = new int[V];
+		int n = 0;
+		if (hub >= 0)
+			marked[hub] = true;
+		Integer[] neighbours = new Integer[V];
+		for (int start : starts) {
+			if (marked[start])
+				continue;
+			int head = n;
+			visit[n++] = start;
+			marked[start] = true;
+			while (head < n) {
+				int v = visit[head++];
+				int k = 0;
+				for (int i = first[v]; i < first[v + 1]; i++) {
+					int w = adj[i];
+					if (!marked[w]) {
+						marked[w] = true;
+						neighbours[k++] = w;
+					}
+				}
+				if (cuthillMcKee)
+					java.util.Arrays.sort(neighbours, 0, k, byDegree(degree));
+				for (int i = 0; i < k; i++)
+					visit[n++] = neighbours[i];
+			}
+		}
+		if (cuthillMcKee) {
+			for (int i = 0, j = n - 1; i < j; i++, j--) {
+				int swap = visit[i];
+				visit[i] = visit[j];
+				visit[j] = swap;
+			}
+		}
+		if (hub >= 0)
+			visit[n++] = hub;
+		return visit;
+	}
+
+	// vertices by decreasing degree, ties by number
+	private static int[] byDegree(int V, final int[] degree, int hub) {
+		Integer[] order = new Integer[V];
+		for (int v = 0; v < V; v++)
+			order[v] = v;
+		java.util.Arrays.sort(order, new java.util.Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return degree[b] - degree[a];
+			}
+		});
+		int[] visit = new int[V];
+		int n = 0;
+		for (int v : order)
+			if (v != hub)
+				visit[n++] = v;
+		if (hub >= 0)
+			visit[n++] = hub;
+		return visit;
+	}
+
+	// increasing degree, ties by number
+	private static java.util.Comparator<Integer> byDegree(final int[] degree) {
+		return new java.util.Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return degree[a] - degree[b];
+			}
+		};
+	}
+
+	/**
+	 * Returns a copy of <tt>g</tt> in which vertex <tt>v</tt> is called
+	 * <tt>perm[v]</tt>. The edges leaving a vertex are kept in the same order
+	 * as in <tt>g</tt>, and <tt>origin(e)</tt> of the copy is the index of
+	 * edge <tt>e</tt> in <tt>g</tt>.
+	 */
+	public static CompactDigraph relabel(CompactDigraph g, int[] perm) {
+		int V = g.V();
+		int[] inv = inverse(perm);
+		int[] first = new int[V + 1];
+		int[] from = new int[g.E()];
+		int[] to = new int[g.E()];
+		double[] weight = new double[g.E()];
+		int[] origin = new int[g.E()];
+		int h = 0;
+		for (int u = 0; u < V; u++) {
+			first[u] = h;
+			int v = inv[u];
+			for (int e = g.begin(v); e < g.end(v); e++, h++) {
+				from[h] = u;
+				to[h] = perm[g.to(e)];
+				weight[h] = g.weight(e);
+				origin[h] = e;
+			}
+		}
+		first[V] = h;
+		return new CompactDigraph(first, from, to, weight, origin);
+	}
+
+	/**
+	 * Returns the potentials <tt>p</tt>, computed on
+	 * <tt>relabel(g, perm)</tt>, in the numbering of <tt>g</tt>.
+	 */
+	public static Potentials restore(final Potentials p, final int[] perm) {
+		final Stack<DirectedEdge> cycle;
+		if (p.hasNegativeCycle()) {
+			int[] inv = inverse(perm);
+			Stack<DirectedEdge> reverse = new Stack<DirectedEdge>();
+			for (DirectedEdge e : p.negativeCycle())
+				reverse.push(new DirectedEdge(inv[e.from()], inv[e.to()], e
+						.weight()));
+			cycle = new Stack<DirectedEdge>();
+			for (DirectedEdge e : reverse)
+				cycle.push(e);
+		} else {
+			cycle = null;
+		}
+		return new Potentials() {
+			public boolean hasNegativeCycle() {
+				return cycle != null;
+			}
+
+			public Iterable<DirectedEdge> negativeCycle() {
+				return cycle;
+			}
+
+			public boolean hasPathTo(int v) {
+				return p.hasPathTo(perm[v]);
+			}
+
+			public double distTo(int v) {
+				return p.distTo(perm[v]);
+			}
+		};
+	}
+
+	// inverse of perm: inverse[perm[v]] = v
+	public static int[] inverse(int[] perm) {
+		int[] inv = new int[perm.length];
+		for (int v = 0; v < perm.length; v++)
+			inv[perm[v]] = v;
+		return inv;
+	}
+}